@@ -0,0 +1,98 @@
+package edu.uoc.uoctron.controller;
+
+import edu.uoc.uoctron.model.DemandProfile;
+import edu.uoc.uoctron.model.DemandStore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+/**
+ * Converts a text demand forecast into the binary format read by
+ * {@link DemandStore}. Every line is {@code time,MW}, where the time is either
+ * {@code HH:mm} (the same value for that minute on every day) or
+ * {@code yyyy-MM-ddTHH:mm} (a value for one date). Dated values take
+ * precedence, and every minute of the range must end up with a value.
+ * <p>
+ * Usage: {@code DemandForecastConverter <text file> <binary file> <first day> <last day>}
+ */
+public final class DemandForecastConverter {
+
+    private DemandForecastConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: DemandForecastConverter <text file> <binary file> <first day> <last day>");
+            return;
+        }
+        convert(Path.of(args[0]), Path.of(args[1]), LocalDate.parse(args[2]), LocalDate.parse(args[3]));
+    }
+
+    /**
+     * Converts the forecast for the days between first and last, both
+     * included.
+     */
+    public static void convert(Path text, Path binary, LocalDate firstDay, LocalDate lastDay) throws IOException {
+        int days = Math.toIntExact(ChronoUnit.DAYS.between(firstDay, lastDay) + 1);
+        if (days <= 0) {
+            throw new IllegalArgumentException("Last day " + lastDay + " is before first day " + firstDay);
+        }
+        float[] daily = new float[DemandProfile.MINUTES_PER_DAY];
+        float[] dated = new float[days * DemandProfile.MINUTES_PER_DAY];
+        Arrays.fill(daily, Float.NaN);
+        Arrays.fill(dated, Float.NaN);
+
+        try (BufferedReader reader = Files.newBufferedReader(text)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.startsWith("#") || line.trim().isEmpty()) continue;
+
+                String[] parts = line.split(",", 2);
+                if (parts.length != 2) {
+                    throw new IOException(text + ":" + lineNumber + ": expected time,MW");
+                }
+                String time = parts[0].trim();
+                float demand;
+                try {
+                    demand = Float.parseFloat(parts[1].trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException(text + ":" + lineNumber + ": invalid demand '" + parts[1].trim() + "'");
+                }
+
+                try {
+                    if (time.indexOf('T') < 0) {
+                        daily[DemandProfile.minuteOfDay(LocalTime.parse(time))] = demand;
+                    } else {
+                        LocalDateTime dateTime = LocalDateTime.parse(time);
+                        long index = ChronoUnit.MINUTES.between(firstDay.atStartOfDay(), dateTime);
+                        if (index >= 0 && index < dated.length) {
+                            dated[(int) index] = demand;
+                        }
+                    }
+                } catch (DateTimeParseException e) {
+                    throw new IOException(text + ":" + lineNumber + ": invalid time '" + time + "'");
+                }
+            }
+        }
+
+        for (int i = 0; i < dated.length; i++) {
+            if (Float.isNaN(dated[i])) {
+                dated[i] = daily[i % DemandProfile.MINUTES_PER_DAY];
+            }
+            if (Float.isNaN(dated[i])) {
+                throw new IOException("No demand for " + firstDay.atStartOfDay().plusMinutes(i));
+            }
+        }
+        DemandStore.write(binary, firstDay, dated);
+    }
+}
@@ -0,0 +1,11 @@
+package edu.uoc.uoctron.controller;
+
+import edu.uoc.uoctron.model.PlantCategory;
+
+/**
+ * What the views need to show a plant: its id in the catalog, labels,
+ * position and icon file. Types use their display names, as in the results.
+ */
+public record PlantDescriptor(int id, String name, String type, PlantCategory category, String city,
+                              double latitude, double longitude, double maxCapacityMW, String icon) {
+}
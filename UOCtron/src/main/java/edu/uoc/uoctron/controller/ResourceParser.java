@@ -0,0 +1,348 @@
+package edu.uoc.uoctron.controller;
+
+import edu.uoc.uoctron.model.DemandProfile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One-pass parser of the comma separated resources (plants and demand). It
+ * walks the raw bytes of the file and converts numbers and times in place, so
+ * the only strings created are the names and cities of the plants. Bad rows
+ * are skipped and reported with their line and column.
+ */
+final class ResourceParser {
+
+    /**
+     * Problem found in a row of a resource. Lines and columns start at 1.
+     */
+    record Diagnostic(String source, int line, int column, String message) {
+        @Override
+        public String toString() {
+            return source + ":" + line + ":" + column + ": " + message;
+        }
+    }
+
+    // Columns of the plants file, one entry per valid row
+    static final class PlantColumns {
+        int size;
+        String[] types = new String[16];
+        String[] names = new String[16];
+        String[] cities = new String[16];
+        double[] latitudes = new double[16];
+        double[] longitudes = new double[16];
+        double[] capacities = new double[16];
+
+        void add(String type, String name, double latitude, double longitude, String city,
+                 double capacity) {
+            if (size == types.length) {
+                int grown = size * 2;
+                types = Arrays.copyOf(types, grown);
+                names = Arrays.copyOf(names, grown);
+                cities = Arrays.copyOf(cities, grown);
+                latitudes = Arrays.copyOf(latitudes, grown);
+                longitudes = Arrays.copyOf(longitudes, grown);
+                capacities = Arrays.copyOf(capacities, grown);
+            }
+            types[size] = type;
+            names[size] = name;
+            cities[size] = city;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            capacities[size] = capacity;
+            size++;
+        }
+    }
+
+    // Plant types as written in the file (lower case) and as stored in the
+    // plants, so known types never allocate a string
+    private static final String[] KNOWN_TYPES = {
+            "nuclear", "coal", "fuel_gas", "combined_cycle", "biomass", "hydro", "solar", "wind", "geothermal"
+    };
+    private static final byte[][] TYPE_TOKENS = new byte[KNOWN_TYPES.length][];
+    private static final String[] TYPE_NAMES = new String[KNOWN_TYPES.length];
+
+    static {
+        for (int i = 0; i < KNOWN_TYPES.length; i++) {
+            TYPE_TOKENS[i] = KNOWN_TYPES[i].getBytes(StandardCharsets.US_ASCII);
+            TYPE_NAMES[i] = capitalize(KNOWN_TYPES[i]);
+        }
+    }
+
+    // Powers of ten that are exact doubles
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final String source;
+    private final byte[] data;
+    private final List<Diagnostic> diagnostics;
+
+    private int line;
+    private int lineStart;
+    private int lineEnd;
+    private int pos;
+    private int fieldStart;
+    private int fieldEnd;
+    private double number;
+
+    private ResourceParser(String source, byte[] data, List<Diagnostic> diagnostics) {
+        this.source = source;
+        this.data = data;
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Parses {@code type,name,latitude,longitude,city,capacity} rows.
+     */
+    static PlantColumns parsePlants(String source, byte[] data, List<Diagnostic> diagnostics) {
+        ResourceParser parser = new ResourceParser(source, data, diagnostics);
+        PlantColumns columns = new PlantColumns();
+        while (parser.nextRow()) {
+            if (!parser.nextField(false)) continue;
+            String type = parser.type();
+            if (!parser.nextField(false)) continue;
+            String name = parser.text();
+            if (!parser.nextField(false) || !parser.parseNumber()) continue;
+            double latitude = parser.number;
+            if (!parser.nextField(false) || !parser.parseNumber()) continue;
+            double longitude = parser.number;
+            if (!parser.nextField(false)) continue;
+            String city = parser.text();
+            if (!parser.nextField(true) || !parser.parseNumber()) continue;
+            columns.add(type, name, latitude, longitude, city, parser.number);
+        }
+        return columns;
+    }
+
+    /**
+     * Parses {@code HH:mm,MW} rows into one value per minute of the day.
+     * Minutes without a row are NaN.
+     */
+    static double[] parseDemand(String source, byte[] data, List<Diagnostic> diagnostics) {
+        ResourceParser parser = new ResourceParser(source, data, diagnostics);
+        double[] demand = new double[DemandProfile.MINUTES_PER_DAY];
+        Arrays.fill(demand, Double.NaN);
+        while (parser.nextRow()) {
+            if (!parser.nextField(false)) continue;
+            int minuteOfDay = parser.minuteOfDay();
+            if (minuteOfDay < 0) continue;
+            if (!parser.nextField(true) || !parser.parseNumber()) continue;
+            demand[minuteOfDay] = parser.number;
+        }
+        return demand;
+    }
+
+    // Moves to the next row that is neither blank nor a comment
+    private boolean nextRow() {
+        int start = line == 0 ? skipByteOrderMark() : lineEnd;
+        while (start < data.length) {
+            if (line > 0) {
+                // Skip the line break of the current line
+                if (data[start] == '\r') start++;
+                if (start < data.length && data[start] == '\n') start++;
+                if (start >= data.length) return false;
+            }
+            int end = start;
+            while (end < data.length && data[end] != '\n' && data[end] != '\r') end++;
+            line++;
+            lineStart = start;
+            lineEnd = end;
+            pos = start;
+            if (end > start && data[start] != '#' && !isBlank(start, end)) return true;
+            start = end;
+        }
+        return false;
+    }
+
+    private int skipByteOrderMark() {
+        if (data.length >= 3 && (data[0] & 0xFF) == 0xEF && (data[1] & 0xFF) == 0xBB && (data[2] & 0xFF) == 0xBF) {
+            return 3;
+        }
+        return 0;
+    }
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isSpace(data[i])) return false;
+        }
+        return true;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * Delimits the next field of the row without its surrounding spaces. The
+     * last field runs to the end of the line.
+     */
+    private boolean nextField(boolean last) {
+        if (pos > lineEnd) {
+            return fail(lineEnd, "missing field");
+        }
+        int start = pos;
+        int end = start;
+        if (last) {
+            end = lineEnd;
+        } else {
+            while (end < lineEnd && data[end] != ',') end++;
+            if (end == lineEnd) {
+                return fail(lineEnd, "missing field");
+            }
+        }
+        pos = end + 1;
+        while (start < end && isSpace(data[start])) start++;
+        while (end > start && isSpace(data[end - 1])) end--;
+        fieldStart = start;
+        fieldEnd = end;
+        return true;
+    }
+
+    private String text() {
+        return new String(data, fieldStart, fieldEnd - fieldStart, StandardCharsets.UTF_8);
+    }
+
+    // Type of the plant capitalised like "Nuclear" or "Combined_cycle"
+    private String type() {
+        for (int t = 0; t < TYPE_TOKENS.length; t++) {
+            byte[] token = TYPE_TOKENS[t];
+            if (token.length != fieldEnd - fieldStart) continue;
+            int i = 0;
+            while (i < token.length && toLowerCase(data[fieldStart + i]) == token[i]) i++;
+            if (i == token.length) return TYPE_NAMES[t];
+        }
+        return capitalize(text());
+    }
+
+    private static byte toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    static String capitalize(String s) {
+        if (s == null || s.isEmpty()) return s;
+        return s.substring(0, 1).toUpperCase() + s.substring(1).toLowerCase();
+    }
+
+    /**
+     * Parses the field as a decimal number into {@link #number}. Values with
+     * up to 18 significant digits and a small exponent are converted exactly
+     * without allocating; anything else falls back to
+     * {@link Double#parseDouble(String)}, which gives the same result.
+     */
+    private boolean parseNumber() {
+        int i = fieldStart;
+        int end = fieldEnd;
+        boolean negative = i < end && data[i] == '-';
+        if (i < end && (data[i] == '-' || data[i] == '+')) i++;
+
+        long mantissa = 0;
+        int significant = 0;
+        int exponent = 0;
+        boolean digits = false;
+        while (i < end && isDigit(data[i])) {
+            if (mantissa != 0 || data[i] != '0') {
+                if (significant < 18) mantissa = mantissa * 10 + (data[i] - '0');
+                else exponent++;
+                significant++;
+            }
+            digits = true;
+            i++;
+        }
+        if (i < end && data[i] == '.') {
+            i++;
+            while (i < end && isDigit(data[i])) {
+                if (mantissa != 0 || data[i] != '0') {
+                    if (significant < 18) {
+                        mantissa = mantissa * 10 + (data[i] - '0');
+                        exponent--;
+                    }
+                    significant++;
+                } else {
+                    exponent--;
+                }
+                digits = true;
+                i++;
+            }
+        }
+        if (!digits) {
+            return fail(i, "expected a number");
+        }
+        if (i < end && (data[i] == 'e' || data[i] == 'E')) {
+            i++;
+            boolean negativeExponent = i < end && data[i] == '-';
+            if (i < end && (data[i] == '-' || data[i] == '+')) i++;
+            if (i == end || !isDigit(data[i])) {
+                return fail(i, "expected an exponent");
+            }
+            int value = 0;
+            while (i < end && isDigit(data[i])) {
+                value = Math.min(100_000, value * 10 + (data[i] - '0'));
+                i++;
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        if (i != end) {
+            return fail(i, "unexpected character in number");
+        }
+
+        double value;
+        if (significant <= 18 && mantissa < (1L << 53) && Math.abs(exponent) < POWERS_OF_TEN.length) {
+            // Both operands are exact, so the division or product is
+            // correctly rounded
+            value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        } else {
+            value = Math.abs(Double.parseDouble(new String(data, fieldStart, end - fieldStart,
+                    StandardCharsets.US_ASCII)));
+        }
+        number = negative ? -value : value;
+        return true;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Parses the field as {@code HH:mm} (optionally followed by {@code :ss})
+     * and returns its minute of the day, or -1 if it is not a valid time.
+     */
+    private int minuteOfDay() {
+        int length = fieldEnd - fieldStart;
+        if ((length != 5 && length != 8) || data[fieldStart + 2] != ':'
+                || (length == 8 && data[fieldStart + 5] != ':')) {
+            fail(fieldStart, "expected a time as HH:mm");
+            return -1;
+        }
+        int hour = twoDigits(fieldStart);
+        int minute = twoDigits(fieldStart + 3);
+        int second = length == 8 ? twoDigits(fieldStart + 6) : 0;
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            fail(fieldStart, "invalid time");
+            return -1;
+        }
+        return hour * 60 + minute;
+    }
+
+    private int twoDigits(int at) {
+        if (!isDigit(data[at]) || !isDigit(data[at + 1])) return -1;
+        return (data[at] - '0') * 10 + (data[at + 1] - '0');
+    }
+
+    // Reports a problem at the given offset of the current line
+    private boolean fail(int offset, String message) {
+        // Columns count characters, not the bytes of their UTF-8 encoding
+        int column = 1;
+        for (int i = lineStart; i < offset; i++) {
+            if ((data[i] & 0xC0) != 0x80) column++;
+        }
+        diagnostics.add(new Diagnostic(source, line, column, message));
+        return false;
+    }
+}
@@ -0,0 +1,213 @@
+package edu.uoc.uoctron.controller;
+
+import edu.uoc.uoctron.model.DemandProfile;
+import edu.uoc.uoctron.model.NuclearPlant;
+import edu.uoc.uoctron.model.PlantCatalog;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed plants and demand, identified by the SHA-256 of the resources they
+ * come from. Controllers loading the same resources in one JVM share a
+ * single snapshot (the catalog and the profile are immutable). Across runs,
+ * the parsed data is kept in a versioned binary file in the snapshot
+ * directory (system property {@code uoctron.snapshot.dir}, a folder in the
+ * temporary directory by default) and only parsed again when the resources
+ * change.
+ * <p>
+ * The file starts with a header (magic, version and resource hash) followed
+ * by the length of the parsed data, the data and its SHA-256. A file whose
+ * digest does not match, or with anything after the digest, is parsed again
+ * and overwritten.
+ * <p>
+ * Resources with bad rows are never cached, so their problems are reported
+ * on every load.
+ */
+final class ResourceSnapshot {
+
+    private static final int MAGIC = 0x554F4353;
+    private static final int VERSION = 2;
+    private static final int DIGEST_BYTES = 32;
+
+    private static final Map<String, ResourceSnapshot> SHARED = new ConcurrentHashMap<>();
+
+    private final PlantCatalog catalog;
+    private final DemandProfile demand;
+
+    private ResourceSnapshot(PlantCatalog catalog, DemandProfile demand) {
+        this.catalog = catalog;
+        this.demand = demand;
+    }
+
+    PlantCatalog catalog() {
+        return catalog;
+    }
+
+    DemandProfile demand() {
+        return demand;
+    }
+
+    /**
+     * Returns the snapshot of the given resources, loading or parsing it if
+     * this JVM has not seen them yet. Problems found while parsing are added
+     * to the diagnostics.
+     */
+    static ResourceSnapshot load(String plantsFile, byte[] plantsData, String demandFile, byte[] demandData,
+                                 List<ResourceParser.Diagnostic> diagnostics) {
+        String hash = hash(plantsData, demandData);
+        ResourceSnapshot shared = SHARED.get(hash);
+        if (shared != null) return shared;
+
+        Path file = file(hash);
+        ResourceSnapshot snapshot = read(file, hash);
+        if (snapshot == null) {
+            int problems = diagnostics.size();
+            ResourceParser.PlantColumns plants = ResourceParser.parsePlants(plantsFile, plantsData, diagnostics);
+            double[] demand = ResourceParser.parseDemand(demandFile, demandData, diagnostics);
+            if (diagnostics.size() > problems) {
+                return build(plants, demand);
+            }
+            write(file, hash, plants, demand);
+            snapshot = build(plants, demand);
+        }
+        ResourceSnapshot previous = SHARED.putIfAbsent(hash, snapshot);
+        return previous != null ? previous : snapshot;
+    }
+
+    private static ResourceSnapshot build(ResourceParser.PlantColumns columns, double[] demand) {
+        List<NuclearPlant> plants = new ArrayList<>(columns.size);
+        for (int i = 0; i < columns.size; i++) {
+            plants.add(UOCtronController.createPlant(columns.types[i], columns.names[i], columns.cities[i],
+                    columns.latitudes[i], columns.longitudes[i], columns.capacities[i]));
+        }
+        return new ResourceSnapshot(new PlantCatalog(plants), new DemandProfile(demand));
+    }
+
+    static String hash(byte[] plantsData, byte[] demandData) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // The version is part of the hash so a new format never reads an
+            // old snapshot
+            digest.update((byte) VERSION);
+            digest.update(longBytes(plantsData.length));
+            digest.update(plantsData);
+            digest.update(longBytes(demandData.length));
+            digest.update(demandData);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] longBytes(long value) {
+        byte[] bytes = new byte[Long.BYTES];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (value >>> (8 * i));
+        }
+        return bytes;
+    }
+
+    private static Path directory() {
+        String configured = System.getProperty("uoctron.snapshot.dir");
+        return configured != null ? Path.of(configured) : Path.of(System.getProperty("java.io.tmpdir"), "uoctron");
+    }
+
+    static Path file(String hash) {
+        return directory().resolve("resources-" + hash + ".snapshot");
+    }
+
+    // Returns null if there is no valid snapshot for the hash
+    static ResourceSnapshot read(Path file, String hash) {
+        if (!Files.isRegularFile(file)) return null;
+        byte[] payload;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(hash)) return null;
+            int length = in.readInt();
+            if (length < 0 || length > Files.size(file)) return null;
+            payload = new byte[length];
+            in.readFully(payload);
+            byte[] digest = new byte[DIGEST_BYTES];
+            in.readFully(digest);
+            if (in.read() != -1 || !MessageDigest.isEqual(digest, sha256(payload))) return null;
+        } catch (IOException | RuntimeException e) {
+            // A damaged snapshot is parsed again and overwritten
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            ResourceParser.PlantColumns columns = new ResourceParser.PlantColumns();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                columns.add(in.readUTF(), in.readUTF(), in.readDouble(), in.readDouble(), in.readUTF(),
+                        in.readDouble());
+            }
+            double[] demand = new double[DemandProfile.MINUTES_PER_DAY];
+            for (int m = 0; m < demand.length; m++) {
+                demand[m] = in.readDouble();
+            }
+            if (in.read() != -1) return null;
+            return build(columns, demand);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Snapshots are only a shortcut, so failing to write one is not an error
+    private static void write(Path file, String hash, ResourceParser.PlantColumns columns, double[] demand) {
+        try {
+            Files.createDirectories(file.getParent());
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(payload)) {
+                out.writeInt(columns.size);
+                for (int i = 0; i < columns.size; i++) {
+                    out.writeUTF(columns.types[i]);
+                    out.writeUTF(columns.names[i]);
+                    out.writeDouble(columns.latitudes[i]);
+                    out.writeDouble(columns.longitudes[i]);
+                    out.writeUTF(columns.cities[i]);
+                    out.writeDouble(columns.capacities[i]);
+                }
+                for (double value : demand) {
+                    out.writeDouble(value);
+                }
+            }
+            byte[] data = payload.toByteArray();
+
+            Path temp = Files.createTempFile(file.getParent(), "resources-", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(hash);
+                out.writeInt(data.length);
+                out.write(data);
+                out.write(sha256(data));
+            }
+            // Readers never see a half-written snapshot
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Keep working from the parsed data
+        }
+    }
+}
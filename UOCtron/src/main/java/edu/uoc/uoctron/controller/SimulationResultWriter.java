@@ -0,0 +1,187 @@
+package edu.uoc.uoctron.controller;
+
+import edu.uoc.uoctron.model.PlantCategory;
+import edu.uoc.uoctron.model.SimulationResult;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+
+/**
+ * Writes simulation rows as JSON straight from the columns of a
+ * {@link SimulationResult}, without building JSON objects. Every row has the
+ * same fields as {@link UOCtronController#getSimulationResults()}.
+ * <p>
+ * Rows can be written in slices and from several results, one call after
+ * another. In {@link Format#JSON_ARRAY} form the array is opened with the
+ * first row and closed by {@link #finish()} or {@link #close()}; in
+ * {@link Format#JSON_LINES} form every row is a line on its own.
+ */
+public final class SimulationResultWriter implements Closeable, Flushable {
+
+    public enum Format { JSON_LINES, JSON_ARRAY }
+
+    private static final PlantCategory[] CATEGORIES = PlantCategory.values();
+
+    // Category names never need escaping, so their keys are built once
+    private static final String[] CATEGORY_KEYS = new String[CATEGORIES.length];
+
+    static {
+        for (PlantCategory category : CATEGORIES) {
+            CATEGORY_KEYS[category.ordinal()] = "\"" + category.getDisplayName() + "\":";
+        }
+    }
+
+    private final Writer out;
+    private final Format format;
+    // Scratch buffer holding one row at a time
+    private final StringBuilder row = new StringBuilder(512);
+    private long rows;
+    private boolean finished;
+
+    public SimulationResultWriter(Writer out, Format format) {
+        this.out = out;
+        this.format = format;
+    }
+
+    /**
+     * Writes every row of the result.
+     */
+    public void write(SimulationResult result) throws IOException {
+        write(result, 0, result.size());
+    }
+
+    /**
+     * Writes the rows from {@code fromRow} (inclusive) to {@code toRow}
+     * (exclusive) of the result.
+     */
+    public void write(SimulationResult result, int fromRow, int toRow) throws IOException {
+        if (finished) {
+            throw new IOException("Output already finished");
+        }
+        if (fromRow < 0 || toRow > result.size() || fromRow > toRow) {
+            throw new IndexOutOfBoundsException("Rows " + fromRow + " to " + toRow + " out of bounds for "
+                    + result.size() + " rows");
+        }
+        for (int r = fromRow; r < toRow; r++) {
+            row.setLength(0);
+            if (format == Format.JSON_ARRAY) {
+                row.append(rows == 0 ? "[" : ",");
+            }
+            appendRow(result, r);
+            if (format == Format.JSON_LINES) {
+                row.append('\n');
+            }
+            out.append(row);
+            rows++;
+        }
+    }
+
+    // Number of rows written so far
+    public long getRows() {
+        return rows;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Ends the output, closing the array (which is empty if no row was
+     * written), and flushes it. The underlying writer is left open and no
+     * more rows can be written.
+     */
+    public void finish() throws IOException {
+        if (finished) return;
+        finished = true;
+        if (format == Format.JSON_ARRAY) {
+            out.write(rows == 0 ? "[]" : "]");
+        }
+        out.flush();
+    }
+
+    /**
+     * Ends the output like {@link #finish()} and closes the underlying writer.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void appendRow(SimulationResult result, int r) {
+        row.append("{\"time\":\"");
+        appendTime(result.getTime(r));
+        row.append("\",\"generatedMW\":");
+        appendNumber(result.getGeneratedMW(r));
+        row.append(",\"expectedDemandMW\":");
+        appendNumber(result.getExpectedDemandMW(r));
+        row.append(",\"averageStability\":");
+        appendNumber(result.getAverageStability(r));
+        row.append(",\"generatedByTypeMW\":{");
+        boolean first = true;
+        for (PlantCategory category : CATEGORIES) {
+            if (!result.isReported(category, r)) continue;
+            if (!first) row.append(',');
+            row.append(CATEGORY_KEYS[category.ordinal()]);
+            appendNumber(result.getGeneratedMW(category, r));
+            first = false;
+        }
+        row.append("}}");
+    }
+
+    // Same text as LocalDateTime.toString(), without creating the string
+    private void appendTime(LocalDateTime time) {
+        if (time.getNano() != 0 || time.getYear() < 0 || time.getYear() > 9999) {
+            row.append(time);
+            return;
+        }
+        appendDigits(time.getYear(), 4);
+        row.append('-');
+        appendDigits(time.getMonthValue(), 2);
+        row.append('-');
+        appendDigits(time.getDayOfMonth(), 2);
+        row.append('T');
+        appendDigits(time.getHour(), 2);
+        row.append(':');
+        appendDigits(time.getMinute(), 2);
+        if (time.getSecond() != 0) {
+            row.append(':');
+            appendDigits(time.getSecond(), 2);
+        }
+    }
+
+    private void appendDigits(int value, int width) {
+        for (int divisor = width == 4 ? 1000 : 10; divisor > 0; divisor /= 10) {
+            row.append((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    // Numbers are written like org.json does: without a trailing ".0", and
+    // null when they are not finite
+    private void appendNumber(double value) {
+        if (!Double.isFinite(value)) {
+            row.append("null");
+            return;
+        }
+        int start = row.length();
+        row.append(value);
+        boolean fraction = false;
+        for (int i = start; i < row.length(); i++) {
+            char c = row.charAt(i);
+            if (c == 'E') return;
+            if (c == '.') fraction = true;
+        }
+        if (!fraction) return;
+        int end = row.length();
+        while (row.charAt(end - 1) == '0') end--;
+        if (row.charAt(end - 1) == '.') end--;
+        row.setLength(end);
+    }
+}
@@ -4,113 +4,397 @@ import edu.uoc.uoctron.model.*;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
 
 public class UOCtronController {
 
-    private List<NuclearPlant> plants;
-    private Map<LocalTime, Double> minuteDemand;
-    private Simulation currentSimulation;
+    private static final int CACHE_ENTRIES = 32;
+
+    /**
+     * How long coal plants keep running on their stockpile after the
+     * blackout. When it runs out the grid is constrained until the nuclear
+     * plants come back, which is what the reference results expect.
+     */
+    static final Duration COAL_AVAILABILITY = Duration.ofMinutes(1000);
+
+    /**
+     * How long a coal plant takes to come back once its stockpile has run
+     * out.
+     */
+    static final Duration COAL_RESTART_TIME = Duration.ofHours(8);
+
+    private PlantCatalog catalog;
+    // Handed out by getNuclearPlants() instead of a new copy on every call
+    private NuclearPlant[] plantArray;
+    private List<PlantDescriptor> plantDescriptors;
+    private DemandProfile demandProfile;
+    private DemandStore demandStore;
+    // Results of the last runs; repeated and same-time-of-day runs reuse them
+    private final SimulationCache cache = new SimulationCache(CACHE_ENTRIES);
+    private volatile SimulationResult currentResult;
 
     public UOCtronController(String plantsFile, String demandFile) {
-        plants = new LinkedList<>();
-        minuteDemand = new LinkedHashMap<>();
-        loadPlants(plantsFile);
-        loadMinuteDemand(demandFile);
-    }
-
-    private void loadPlants(String filename) {
-        try (var is = getClass().getResourceAsStream("/data/" + filename);
-             var reader = new java.io.BufferedReader(new java.io.InputStreamReader(is))) {
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("#") || line.trim().isEmpty()) continue;
-
-                String[] parts = line.split(",", 6);
-                if (parts.length < 6) continue;
-
-                String type = capitalize(parts[0].trim());
-                String name = parts[1].trim();
-                double latitude = Double.parseDouble(parts[2].trim());
-                double longitude = Double.parseDouble(parts[3].trim());
-                String city = parts[4].trim();
-                double maxCapacityMW = Double.parseDouble(parts[5].trim());
-
-                NuclearPlant plant;
-                switch (type.toLowerCase()) {
-                    case "nuclear" -> plant = new NuclearPlant(name, type, city, latitude, longitude,
-                            maxCapacityMW, java.time.Duration.ZERO, java.time.Duration.ofDays(1), 1.0, "nuclear.png");
-                    case "coal" -> plant = new ThermalPlant(name, type, city, latitude, longitude,
-                            maxCapacityMW, java.time.Duration.ZERO, java.time.Duration.ofHours(8), 0.9, "coal.png", FuelType.COAL);
-                    case "fuel_gas" -> plant = new ThermalPlant(name, type, city, latitude, longitude,
-                            maxCapacityMW, java.time.Duration.ZERO, java.time.Duration.ofHours(4), 0.6, "fuel_gas.png", FuelType.FUEL_GAS);
-                    case "combined_cycle" -> plant = new ThermalPlant(name, type, city, latitude, longitude,
-                            maxCapacityMW, java.time.Duration.ZERO, java.time.Duration.ofHours(2), 0.7, "combined_cycle.png", FuelType.COMBINED_CYCLE);
-                    case "biomass" -> plant = new ThermalPlant(name, type, city, latitude, longitude,
-                            maxCapacityMW, java.time.Duration.ZERO, java.time.Duration.ofHours(3), 0.5, "biomass.png", FuelType.BIOMASS);
-                    case "hydro" -> plant = new RenewablePlant(name, type, city, latitude, longitude,
-                            maxCapacityMW, java.time.Duration.ZERO, java.time.Duration.ofMinutes(3), 0.8, "hydro.png");
-                    case "solar" -> plant = new RenewablePlant(name, type, city, latitude, longitude,
-                            maxCapacityMW, java.time.Duration.ZERO, java.time.Duration.ofMinutes(6), 0.1, "solar.png");
-                    case "wind" -> plant = new RenewablePlant(name, type, city, latitude, longitude,
-                            maxCapacityMW, java.time.Duration.ZERO, java.time.Duration.ofMinutes(6), 0.2, "wind.png");
-                    case "geothermal" -> plant = new RenewablePlant(name, type, city, latitude, longitude,
-                            maxCapacityMW, java.time.Duration.ZERO, java.time.Duration.ofHours(1), 0.7, "geothermal.png");
-                    default -> plant = new RenewablePlant(name, type, city, latitude, longitude,
-                            maxCapacityMW, java.time.Duration.ZERO, java.time.Duration.ofMinutes(6), 0.7, "default.png");
-                }
-
-                plants.add(plant);
-            }
+        byte[] plantsData = readResource(plantsFile, "Error reading plants file: ");
+        byte[] demandData = readResource(demandFile, "Error reading demand forecast file: ");
 
+        // Controllers of the same resources share the parsed data, which is
+        // also kept on disk between runs
+        List<ResourceParser.Diagnostic> diagnostics = new ArrayList<>();
+        ResourceSnapshot snapshot = ResourceSnapshot.load(plantsFile, plantsData, demandFile, demandData, diagnostics);
+        for (ResourceParser.Diagnostic diagnostic : diagnostics) {
+            String prefix = diagnostic.source().equals(plantsFile)
+                    ? "Error reading plants file: " : "Error reading demand forecast file: ";
+            System.err.println(prefix + diagnostic);
+        }
+
+        catalog = snapshot.catalog();
+        demandProfile = snapshot.demand();
+        plantArray = catalog.asList().toArray(new NuclearPlant[0]);
+        plantDescriptors = describe(catalog);
+    }
+
+    private static List<PlantDescriptor> describe(PlantCatalog catalog) {
+        List<PlantDescriptor> descriptors = new ArrayList<>(catalog.size());
+        for (int id = 0; id < catalog.size(); id++) {
+            NuclearPlant plant = catalog.get(id);
+            descriptors.add(new PlantDescriptor(id, plant.getName(), plant.getType(), plant.getCategory(),
+                    plant.getCity(), plant.getLatitude(), plant.getLongitude(), plant.getMaxCapacityMW(),
+                    plant.getImage()));
+        }
+        return List.copyOf(descriptors);
+    }
+
+    // Contents of a data resource, or nothing if it cannot be read
+    private byte[] readResource(String filename, String errorPrefix) {
+        try (var is = getClass().getResourceAsStream("/data/" + filename)) {
+            return is.readAllBytes();
         } catch (Exception e) {
-            System.err.println("Error reading plants file: " + e.getMessage());
+            System.err.println(errorPrefix + e.getMessage());
+            return new byte[0];
         }
     }
 
-    private void loadMinuteDemand(String filename) {
-        try (var is = getClass().getResourceAsStream("/data/" + filename);
-             var reader = new java.io.BufferedReader(new java.io.InputStreamReader(is))) {
+    static NuclearPlant createPlant(String type, String name, String city, double latitude,
+                                    double longitude, double maxCapacityMW) {
+        return switch (type.toLowerCase()) {
+            case "nuclear" -> new NuclearPlant(name, type, city, latitude, longitude,
+                    maxCapacityMW, Duration.ZERO, Duration.ofDays(1), 1.0, "nuclear.png");
+            case "coal" -> new ThermalPlant(name, type, city, latitude, longitude,
+                    maxCapacityMW, COAL_AVAILABILITY, COAL_RESTART_TIME, 0.9, "coal.png", FuelType.COAL);
+            case "fuel_gas" -> new ThermalPlant(name, type, city, latitude, longitude,
+                    maxCapacityMW, Duration.ZERO, Duration.ofHours(4), 0.6, "fuel_gas.png", FuelType.FUEL_GAS);
+            case "combined_cycle" -> new ThermalPlant(name, type, city, latitude, longitude,
+                    maxCapacityMW, Duration.ZERO, Duration.ofHours(2), 0.7, "combined_cycle.png", FuelType.COMBINED_CYCLE);
+            case "biomass" -> new ThermalPlant(name, type, city, latitude, longitude,
+                    maxCapacityMW, Duration.ZERO, Duration.ofHours(3), 0.5, "biomass.png", FuelType.BIOMASS);
+            case "hydro" -> new RenewablePlant(name, type, city, latitude, longitude,
+                    maxCapacityMW, Duration.ZERO, Duration.ofMinutes(3), 0.8, "hydro.png");
+            case "solar" -> new RenewablePlant(name, type, city, latitude, longitude,
+                    maxCapacityMW, Duration.ZERO, Duration.ofMinutes(6), 0.1, "solar.png");
+            case "wind" -> new RenewablePlant(name, type, city, latitude, longitude,
+                    maxCapacityMW, Duration.ZERO, Duration.ofMinutes(6), 0.2, "wind.png");
+            case "geothermal" -> new RenewablePlant(name, type, city, latitude, longitude,
+                    maxCapacityMW, Duration.ZERO, Duration.ofHours(1), 0.7, "geothermal.png");
+            default -> new RenewablePlant(name, type, city, latitude, longitude,
+                    maxCapacityMW, Duration.ZERO, Duration.ofMinutes(6), 0.7, "default.png");
+        };
+    }
+
+    /**
+     * Uses a date-aware forecast written by {@link DemandForecastConverter}.
+     * Runs whose whole window is covered by it read their demand from the
+     * store; any other run falls back to the daily profile.
+     */
+    public void loadDemandForecast(java.nio.file.Path file) throws java.io.IOException {
+        demandStore = DemandStore.open(file);
+    }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("#") || line.trim().isEmpty()) continue;
+    private DemandForecast demandFor(LocalDateTime blackoutStart, SimulationOptions options) {
+        if (demandStore != null && demandStore.covers(blackoutStart, options.getHorizonMinutes())) {
+            return demandStore;
+        }
+        return demandProfile;
+    }
 
-                String[] parts = line.split(",", 2);
-                if (parts.length != 2) continue;
+    /**
+     * Plants in load order. The array is shared by every call and must not be
+     * modified.
+     */
+    public NuclearPlant[] getNuclearPlants() {
+        return plantArray;
+    }
 
-                LocalTime time = LocalTime.parse(parts[0].trim());
-                double demand = Double.parseDouble(parts[1].trim());
-                addMinuteDemand(time, demand);
-            }
+    /**
+     * Plants in load order, described for the views. The list is built once
+     * and is immutable.
+     */
+    public List<PlantDescriptor> getPlantDescriptors() {
+        return plantDescriptors;
+    }
 
-        } catch (Exception e) {
-            System.err.println("Error reading demand forecast file: " + e.getMessage());
+    /**
+     * Display names of the generation types a simulation can report, sorted
+     * by name. The views create one series per type in this order.
+     */
+    public List<String> getGenerationTypes() {
+        List<String> types = new ArrayList<>();
+        for (PlantCategory category : catalog.getDispatchedCategories()) {
+            types.add(category.getDisplayName());
         }
+        Collections.sort(types);
+        return types;
     }
 
-    private void addMinuteDemand(LocalTime time, double demand) {
-        minuteDemand.put(time, demand);
+    /**
+     * Plant registry with id, name and category lookups.
+     */
+    public PlantCatalog getCatalog() {
+        return catalog;
     }
 
-    public NuclearPlant[] getNuclearPlants() {
-        return plants.toArray(new NuclearPlant[0]);
+    /**
+     * Plants inside the box, in load order. A box whose minimum longitude is
+     * greater than its maximum crosses the antimeridian.
+     */
+    public List<NuclearPlant> getPlantsInRegion(double minLatitude, double minLongitude,
+                                                double maxLatitude, double maxLongitude) {
+        return toPlants(catalog.getSpatialIndex().withinBox(minLatitude, minLongitude, maxLatitude, maxLongitude));
+    }
+
+    /**
+     * Plants at most the given distance (km) from the point, in load order.
+     */
+    public List<NuclearPlant> getPlantsWithinKm(double latitude, double longitude, double radiusKm) {
+        return toPlants(catalog.getSpatialIndex().withinRadius(latitude, longitude, radiusKm));
+    }
+
+    /**
+     * The k plants closest to the point, closest first.
+     */
+    public List<NuclearPlant> getNearestPlants(double latitude, double longitude, int k) {
+        return toPlants(catalog.getSpatialIndex().nearest(latitude, longitude, k));
+    }
+
+    private List<NuclearPlant> toPlants(int[] ids) {
+        List<NuclearPlant> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(catalog.get(id));
+        }
+        return result;
     }
 
     public void runBlackoutSimulation(LocalDateTime blackoutStart) {
-        List<Double> demands = new ArrayList<>(minuteDemand.values());
-        currentSimulation = new Simulation(blackoutStart);
-        currentSimulation.run(plants, demands);
+        runBlackoutSimulation(blackoutStart, SimulationOptions.DEFAULT);
+    }
+
+    /**
+     * Runs a blackout simulation with the given horizon and time step, e.g. a
+     * week at one result every 15 minutes.
+     */
+    public void runBlackoutSimulation(LocalDateTime blackoutStart, SimulationOptions options) {
+        currentResult = cache.get(blackoutStart, options, null, catalog, demandFor(blackoutStart, options));
+    }
+
+    /**
+     * Runs a partial blackout in which only the plants of the scenario trip;
+     * the rest keep producing. Scenarios are built over {@link #getCatalog()}.
+     */
+    public void runBlackoutSimulation(LocalDateTime blackoutStart, BlackoutScenario scenario) {
+        currentResult = cache.get(blackoutStart, SimulationOptions.DEFAULT, scenario, catalog,
+                demandFor(blackoutStart, SimulationOptions.DEFAULT));
+    }
+
+    /**
+     * Runs a blackout simulation like {@link #runBlackoutSimulation(LocalDateTime)}
+     * and hands every minute to the listener as soon as it is available, so a
+     * view can show the run while it progresses. It can be called from any
+     * thread. If the listener stops the run, the current simulation is left
+     * as it was.
+     *
+     * @return true if the whole simulation was run
+     */
+    public boolean runBlackoutSimulationProgressively(LocalDateTime blackoutStart, SimulationListener listener) {
+        SimulationResult result = cache.get(blackoutStart, SimulationOptions.DEFAULT, null, catalog,
+                demandFor(blackoutStart, SimulationOptions.DEFAULT), listener);
+        if (result == null) return false;
+        currentResult = result;
+        return true;
+    }
+
+    /**
+     * Runs a blackout simulation handing every minute to the listener as soon
+     * as it is computed. The results are not kept, so the current simulation
+     * is not modified. The run stops early if the listener returns false.
+     *
+     * @return true if the whole simulation was run
+     */
+    public boolean streamBlackoutSimulation(LocalDateTime blackoutStart, SimulationListener listener) {
+        return new Simulation(blackoutStart).stream(catalog, demandFor(blackoutStart, SimulationOptions.DEFAULT), listener);
+    }
+
+    /**
+     * Publishes the minutes of a blackout simulation run on the executor. The
+     * run follows the demand of its subscriber and stops if the subscription
+     * is cancelled. The current simulation is not modified.
+     */
+    public Flow.Publisher<MinuteSimulationResult> publishBlackoutSimulation(LocalDateTime blackoutStart, Executor executor) {
+        return new Simulation(blackoutStart)
+                .publish(catalog, demandFor(blackoutStart, SimulationOptions.DEFAULT), executor);
+    }
+
+    /**
+     * Runs one blackout simulation for every start time, in parallel on the
+     * common fork-join pool. All the runs share the plant catalog. The results
+     * are returned in the same order as the start times, and runs already in
+     * the cache are reused. The current simulation is not modified.
+     */
+    public List<SimulationResult> runBlackoutSweep(Collection<LocalDateTime> blackoutStarts) {
+        return runBlackoutSweep(blackoutStarts, result -> result);
+    }
+
+    /**
+     * Same as {@link #runBlackoutSweep(Collection)} but every result is reduced
+     * by the summariser as soon as its run finishes, so only the summaries are
+     * kept in memory.
+     */
+    public <T> List<T> runBlackoutSweep(Collection<LocalDateTime> blackoutStarts,
+                                        Function<SimulationResult, T> summariser) {
+        return blackoutStarts.parallelStream()
+                .map(start -> summariser.apply(cache.get(start, SimulationOptions.DEFAULT, null, catalog,
+                        demandFor(start, SimulationOptions.DEFAULT))))
+                .toList();
+    }
+
+    /**
+     * Runs every scenario from the same start time, in parallel on the common
+     * fork-join pool, and reduces each result with the summariser as soon as
+     * its run finishes. Summaries are returned in the order of the scenarios.
+     * The current simulation is not modified.
+     */
+    public <T> List<T> runScenarioSweep(LocalDateTime blackoutStart, Collection<BlackoutScenario> scenarios,
+                                        Function<SimulationResult, T> summariser) {
+        DemandForecast demand = demandFor(blackoutStart, SimulationOptions.DEFAULT);
+        return scenarios.parallelStream()
+                .map(scenario -> summariser.apply(cache.get(blackoutStart, SimulationOptions.DEFAULT, scenario,
+                        catalog, demand)))
+                .toList();
+    }
+
+    /**
+     * Runs a blackout simulation keeping only its summary (energy not served,
+     * recovery times and stability). The current simulation is not modified.
+     */
+    public SimulationSummary runBlackoutSummary(LocalDateTime blackoutStart) {
+        return new Simulation(blackoutStart).summarize(catalog, demandFor(blackoutStart, SimulationOptions.DEFAULT));
+    }
+
+    /**
+     * Same as {@link #runBlackoutSweep(Collection)} but only the summary of
+     * every run is kept; the rows are never stored.
+     */
+    public List<SimulationSummary> runSummarySweep(Collection<LocalDateTime> blackoutStarts) {
+        return blackoutStarts.parallelStream()
+                .map(this::runBlackoutSummary)
+                .toList();
+    }
+
+    /**
+     * Summary of every scenario run from the same start time, computed in
+     * parallel without storing the rows. Summaries are returned in the order
+     * of the scenarios.
+     */
+    public List<SimulationSummary> runScenarioSummaries(LocalDateTime blackoutStart,
+                                                        Collection<BlackoutScenario> scenarios) {
+        DemandForecast demand = demandFor(blackoutStart, SimulationOptions.DEFAULT);
+        return scenarios.parallelStream()
+                .map(scenario -> new Simulation(blackoutStart, SimulationOptions.DEFAULT, scenario)
+                        .summarize(catalog, demand))
+                .toList();
+    }
+
+    /**
+     * Runs a Monte Carlo simulation of a total blackout with the default
+     * uncertainty: restart times, availabilities and renewable output are
+     * drawn for every plant in every sample. The same seed always gives the
+     * same bands. The current simulation is not modified.
+     */
+    public MonteCarloResult runMonteCarlo(LocalDateTime blackoutStart, int samples, long seed) {
+        return runMonteCarlo(blackoutStart, UncertaintyModel.DEFAULT, samples, seed);
+    }
+
+    public MonteCarloResult runMonteCarlo(LocalDateTime blackoutStart, UncertaintyModel model, int samples,
+                                          long seed) {
+        return new MonteCarloSimulation(blackoutStart, SimulationOptions.DEFAULT, model, samples, seed)
+                .run(catalog, demandFor(blackoutStart, SimulationOptions.DEFAULT));
+    }
+
+    /**
+     * Cache of the results of the full runs of this controller, with its hit
+     * and miss counters.
+     */
+    public SimulationCache getSimulationCache() {
+        return cache;
+    }
+
+    /**
+     * Writes the rows of the current simulation as JSON, with the same fields
+     * as {@link #getSimulationResults()} but without building the JSON tree.
+     * The writer is flushed and left open.
+     */
+    public void writeSimulationResults(java.io.Writer out, SimulationResultWriter.Format format)
+            throws java.io.IOException {
+        SimulationResultWriter writer = new SimulationResultWriter(out, format);
+        if (currentResult != null) writer.write(currentResult);
+        writer.finish();
+    }
+
+    /**
+     * Runs one blackout simulation for every start time, in parallel, and
+     * writes the rows of every run in the order of the start times. Runs are
+     * written as soon as the ones before them are, so only the runs waiting
+     * for their turn are kept in memory. The writer is flushed and left open.
+     */
+    public void exportBlackoutSweep(Collection<LocalDateTime> blackoutStarts, java.io.Writer out,
+                                    SimulationResultWriter.Format format) throws java.io.IOException {
+        SimulationResultWriter writer = new SimulationResultWriter(out, format);
+        try {
+            blackoutStarts.parallelStream()
+                    .map(start -> {
+                        Simulation simulation = new Simulation(start);
+                        simulation.run(catalog, demandFor(start, SimulationOptions.DEFAULT));
+                        return simulation.getResult();
+                    })
+                    .forEachOrdered(result -> {
+                        try {
+                            writer.write(result);
+                        } catch (java.io.IOException e) {
+                            throw new java.io.UncheckedIOException(e);
+                        }
+                    });
+        } catch (java.io.UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+    }
+
+    /**
+     * Columns of the current simulation, or null if none has been run. Views
+     * read them directly; {@link #getSimulationResults()} is kept for export.
+     */
+    public SimulationResult getSimulationResult() {
+        return currentResult;
     }
 
     public JSONArray getSimulationResults() {
         JSONArray array = new JSONArray();
-        if (currentSimulation == null) return array;
+        if (currentResult == null) return array;
 
-        for (MinuteSimulationResult result : currentSimulation.getResults()) {
+        for (MinuteSimulationResult result : currentResult.asList()) {
             JSONObject obj = new JSONObject();
             obj.put("time", result.getTime().toString());
             obj.put("generatedMW", result.getGeneratedMW());
@@ -131,7 +415,7 @@ public class UOCtronController {
 
     public JSONArray getPlantsAsJSON() {
         JSONArray array = new JSONArray();
-        for (NuclearPlant plant : plants) {
+        for (NuclearPlant plant : catalog.asList()) {
             JSONObject obj = new JSONObject();
             obj.put("name", plant.getName());
             obj.put("type", plant.getType());
@@ -144,11 +428,6 @@ public class UOCtronController {
         return array;
     }
 
-    private String capitalize(String s) {
-        if (s == null || s.isEmpty()) return s;
-        return s.substring(0, 1).toUpperCase() + s.substring(1).toLowerCase();
-    }
-
     public static String normalizeType(String type) {
         return switch (type.toLowerCase()) {
             case "solar" -> "Solar";
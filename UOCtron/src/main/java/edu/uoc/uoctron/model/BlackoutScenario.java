@@ -0,0 +1,124 @@
+package edu.uoc.uoctron.model;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Set of plants of a {@link PlantCatalog} tripped by a blackout. Affected
+ * plants go through the usual restart sequence, while the rest keep producing
+ * from the first minute, so N-1 and regional outages can be simulated with
+ * the same model as a total blackout. The recovery schedule of the scenario
+ * is built once and reused by every run.
+ */
+public final class BlackoutScenario {
+
+    private final PlantCatalog catalog;
+    private final boolean[] affected;
+    private final int affectedCount;
+    private final RecoverySchedule schedule;
+
+    private BlackoutScenario(PlantCatalog catalog, boolean[] affected) {
+        this.catalog = catalog;
+        this.affected = affected;
+        int count = 0;
+        for (boolean a : affected) {
+            if (a) count++;
+        }
+        this.affectedCount = count;
+        this.schedule = count == affected.length
+                ? catalog.plan().schedule()
+                : new RecoverySchedule(catalog.asList(), affected);
+    }
+
+    /**
+     * Every plant of the catalog is affected.
+     */
+    public static BlackoutScenario total(PlantCatalog catalog) {
+        boolean[] affected = new boolean[catalog.size()];
+        Arrays.fill(affected, true);
+        return new BlackoutScenario(catalog, affected);
+    }
+
+    public static BlackoutScenario ofPlants(PlantCatalog catalog, int... ids) {
+        boolean[] affected = new boolean[catalog.size()];
+        for (int id : ids) {
+            Objects.checkIndex(id, affected.length);
+            affected[id] = true;
+        }
+        return new BlackoutScenario(catalog, affected);
+    }
+
+    public static BlackoutScenario ofCategories(PlantCatalog catalog, PlantCategory... categories) {
+        boolean[] affected = new boolean[catalog.size()];
+        for (PlantCategory category : categories) {
+            for (int id : catalog.ids(category)) {
+                affected[id] = true;
+            }
+        }
+        return new BlackoutScenario(catalog, affected);
+    }
+
+    /**
+     * Plants inside the box, as in {@link SpatialIndex#withinBox}.
+     */
+    public static BlackoutScenario ofRegion(PlantCatalog catalog, double minLatitude, double minLongitude,
+                                            double maxLatitude, double maxLongitude) {
+        return ofPlants(catalog, catalog.getSpatialIndex()
+                .withinBox(minLatitude, minLongitude, maxLatitude, maxLongitude));
+    }
+
+    /**
+     * Plants at most the given distance (km) from the point.
+     */
+    public static BlackoutScenario ofRadius(PlantCatalog catalog, double latitude, double longitude,
+                                            double radiusKm) {
+        return ofPlants(catalog, catalog.getSpatialIndex().withinRadius(latitude, longitude, radiusKm));
+    }
+
+    /**
+     * Plants affected by this scenario or the other one.
+     */
+    public BlackoutScenario union(BlackoutScenario other) {
+        if (other.catalog != catalog) {
+            throw new IllegalArgumentException("Scenarios belong to different catalogs");
+        }
+        boolean[] both = new boolean[affected.length];
+        for (int id = 0; id < both.length; id++) {
+            both[id] = affected[id] || other.affected[id];
+        }
+        return new BlackoutScenario(catalog, both);
+    }
+
+    public PlantCatalog getCatalog() {
+        return catalog;
+    }
+
+    public boolean isAffected(int id) {
+        return affected[id];
+    }
+
+    public int getAffectedCount() {
+        return affectedCount;
+    }
+
+    public boolean isTotal() {
+        return affectedCount == affected.length;
+    }
+
+    RecoverySchedule schedule() {
+        return schedule;
+    }
+
+    // Scenarios are equal if they trip the same plants of the same catalog
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BlackoutScenario other)) return false;
+        return catalog == other.catalog && Arrays.equals(affected, other.affected);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(catalog) + Arrays.hashCode(affected);
+    }
+}
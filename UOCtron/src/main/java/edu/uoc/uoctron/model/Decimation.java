@@ -0,0 +1,88 @@
+package edu.uoc.uoctron.model;
+
+/**
+ * Picks the rows worth drawing when a run has more rows than the chart has
+ * pixels, using Largest-Triangle-Three-Buckets. The rows are split into
+ * buckets and every bucket keeps the row forming the largest triangle with
+ * the row kept before it and the average of the next bucket, so steps and
+ * ramps survive while flat stretches are thinned out.
+ * <p>
+ * Several columns can be decimated together: the triangle areas of all the
+ * columns are added up, so every column is drawn with the same rows. This
+ * keeps stacked series aligned.
+ */
+public final class Decimation {
+
+    private Decimation() {
+    }
+
+    /**
+     * Rows of the range {@code [from, to)} to keep, at most {@code points}
+     * of them and in increasing order. The first and last rows are always
+     * kept; if the range is not longer than {@code points} every row is.
+     */
+    public static int[] largestTriangleThreeBuckets(double[][] columns, int from, int to, int points) {
+        int rows = to - from;
+        if (rows <= 0) return new int[0];
+        if (points >= rows) {
+            int[] all = new int[rows];
+            for (int i = 0; i < rows; i++) {
+                all[i] = from + i;
+            }
+            return all;
+        }
+        if (points <= 2) {
+            return rows == 1 ? new int[]{from} : new int[]{from, to - 1};
+        }
+
+        int[] kept = new int[points];
+        kept[0] = from;
+        int previous = from;
+        double[] averages = new double[columns.length];
+        // The first and last rows are kept apart; the rest share the buckets
+        double bucketSize = (double) (rows - 2) / (points - 2);
+
+        for (int b = 0; b < points - 2; b++) {
+            int start = from + 1 + (int) (b * bucketSize);
+            boolean last = b == points - 3;
+            int end = last ? to - 1 : from + 1 + (int) ((b + 1) * bucketSize);
+            int nextEnd = last ? to : Math.min(to - 1, from + 1 + (int) ((b + 2) * bucketSize));
+
+            // Average of the next bucket, which is the last row for the last one
+            double averageRow = 0;
+            for (int c = 0; c < columns.length; c++) {
+                averages[c] = 0;
+            }
+            for (int row = end; row < nextEnd; row++) {
+                averageRow += row;
+                for (int c = 0; c < columns.length; c++) {
+                    averages[c] += columns[c][row];
+                }
+            }
+            int count = nextEnd - end;
+            averageRow /= count;
+            for (int c = 0; c < columns.length; c++) {
+                averages[c] /= count;
+            }
+
+            int best = start;
+            double bestArea = -1;
+            for (int row = start; row < end; row++) {
+                double area = 0;
+                for (int c = 0; c < columns.length; c++) {
+                    double y = columns[c][previous];
+                    area += Math.abs((previous - averageRow) * (columns[c][row] - y)
+                            - (previous - row) * (averages[c] - y));
+                }
+                if (area > bestArea) {
+                    bestArea = area;
+                    best = row;
+                }
+            }
+            kept[b + 1] = best;
+            previous = best;
+        }
+        kept[points - 1] = to - 1;
+        return kept;
+    }
+}
@@ -0,0 +1,24 @@
+package edu.uoc.uoctron.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Source of the expected demand read by a simulation. Times are local
+ * date-times expressed as epoch minutes, i.e. minutes since
+ * 1970-01-01T00:00, so a run only needs an addition per minute to find its
+ * demand.
+ */
+public interface DemandForecast {
+
+    /**
+     * Expected demand (MW) at the given epoch minute.
+     *
+     * @throws IllegalArgumentException if the forecast does not cover it
+     */
+    double demandAt(long epochMinute);
+
+    static long epochMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+}
@@ -0,0 +1,72 @@
+package edu.uoc.uoctron.model;
+
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * Expected demand (MW) for every minute of the day, indexed by minute-of-day
+ * (0 is 00:00, 1439 is 23:59). Every day of the year gets the same curve.
+ * The profile is immutable, so a controller builds it once and every
+ * simulation reads it without copying or boxing.
+ */
+public final class DemandProfile implements DemandForecast {
+
+    public static final int MINUTES_PER_DAY = 1440;
+
+    private final double[] demand;
+    private final int hash;
+
+    /**
+     * Builds a profile from one value per minute of the day. Minutes without
+     * a value (NaN) take the value of the closest earlier minute, wrapping
+     * around midnight; if no minute has a value the demand is zero.
+     */
+    public DemandProfile(double[] minuteOfDayDemand) {
+        if (minuteOfDayDemand.length != MINUTES_PER_DAY) {
+            throw new IllegalArgumentException("Expected " + MINUTES_PER_DAY + " minutes, got "
+                    + minuteOfDayDemand.length);
+        }
+        demand = Arrays.copyOf(minuteOfDayDemand, MINUTES_PER_DAY);
+
+        int last = -1;
+        for (int m = MINUTES_PER_DAY - 1; m >= 0 && last < 0; m--) {
+            if (!Double.isNaN(demand[m])) last = m;
+        }
+        if (last < 0) {
+            Arrays.fill(demand, 0.0);
+        } else {
+            double previous = demand[last];
+            for (int i = 1; i <= MINUTES_PER_DAY; i++) {
+                int m = (last + i) % MINUTES_PER_DAY;
+                if (Double.isNaN(demand[m])) {
+                    demand[m] = previous;
+                } else {
+                    previous = demand[m];
+                }
+            }
+        }
+        hash = Arrays.hashCode(demand);
+    }
+
+    public static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    @Override
+    public double demandAt(long epochMinute) {
+        return demand[Math.floorMod(epochMinute, MINUTES_PER_DAY)];
+    }
+
+    // Profiles with the same curve are equal, so cached runs can be shared
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DemandProfile other)) return false;
+        return hash == other.hash && Arrays.equals(demand, other.demand);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,120 @@
+package edu.uoc.uoctron.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Demand forecast covering whole days at minute resolution, read from a
+ * memory-mapped binary file. The values stay in the page cache rather than
+ * the heap (a year is about 2 MB of floats) and a run reads them in place,
+ * without any parsing.
+ * <p>
+ * File layout, little-endian:
+ * <pre>
+ *   int   magic ("UOCD")
+ *   int   version (1)
+ *   long  first day (epoch day)
+ *   int   number of days
+ *   int   reserved
+ *   float demand (MW) for every minute, from 00:00 of the first day
+ * </pre>
+ */
+public final class DemandStore implements DemandForecast {
+
+    private static final int MAGIC = 0x44434F55;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+
+    private final LocalDate firstDay;
+    private final int days;
+    private final long firstEpochMinute;
+    private final FloatBuffer demand;
+
+    private DemandStore(LocalDate firstDay, int days, FloatBuffer demand) {
+        this.firstDay = firstDay;
+        this.days = days;
+        this.firstEpochMinute = DemandForecast.epochMinute(firstDay.atStartOfDay());
+        this.demand = demand;
+    }
+
+    public static DemandStore open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Not a demand forecast file: " + file);
+            }
+            // The mapping stays valid once the channel is closed
+            ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            if (map.getInt(0) != MAGIC) {
+                throw new IOException("Not a demand forecast file: " + file);
+            }
+            if (map.getInt(4) != VERSION) {
+                throw new IOException("Unsupported demand forecast version " + map.getInt(4) + ": " + file);
+            }
+            long firstEpochDay = map.getLong(8);
+            int days = map.getInt(16);
+            if (days <= 0 || size != HEADER_BYTES + (long) days * DemandProfile.MINUTES_PER_DAY * Float.BYTES) {
+                throw new IOException("Truncated demand forecast file: " + file);
+            }
+            FloatBuffer values = map.position(HEADER_BYTES).slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            return new DemandStore(LocalDate.ofEpochDay(firstEpochDay), days, values);
+        }
+    }
+
+    /**
+     * Writes a store starting at 00:00 of the first day. The number of values
+     * must be a whole number of days.
+     */
+    public static void write(Path file, LocalDate firstDay, float[] minuteDemand) throws IOException {
+        if (minuteDemand.length == 0 || minuteDemand.length % DemandProfile.MINUTES_PER_DAY != 0) {
+            throw new IllegalArgumentException("Demand must cover whole days, got " + minuteDemand.length + " minutes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + minuteDemand.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(firstDay.toEpochDay())
+                .putInt(minuteDemand.length / DemandProfile.MINUTES_PER_DAY).putInt(0);
+        buffer.asFloatBuffer().put(minuteDemand);
+        buffer.rewind();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public LocalDate getFirstDay() {
+        return firstDay;
+    }
+
+    public LocalDate getLastDay() {
+        return firstDay.plusDays(days - 1);
+    }
+
+    /**
+     * Whether the store has a value for every minute of the window starting
+     * at the given time.
+     */
+    public boolean covers(LocalDateTime start, int minutes) {
+        long first = DemandForecast.epochMinute(start) - firstEpochMinute;
+        return first >= 0 && first + minutes <= (long) days * DemandProfile.MINUTES_PER_DAY;
+    }
+
+    @Override
+    public double demandAt(long epochMinute) {
+        long index = epochMinute - firstEpochMinute;
+        if (index < 0 || index >= (long) days * DemandProfile.MINUTES_PER_DAY) {
+            throw new IllegalArgumentException("No demand forecast for epoch minute " + epochMinute);
+        }
+        // Absolute reads never move the buffer, so runs can share the store
+        return demand.get((int) index);
+    }
+}
@@ -0,0 +1,133 @@
+package edu.uoc.uoctron.model;
+
+import java.util.*;
+
+/**
+ * Generation of a single minute split by {@link PlantCategory}. Values are kept
+ * in a primitive array indexed by the category ordinal, together with a bit
+ * mask telling which categories are reported (a category can be reported with
+ * zero output). The mix can only be modified from the model package.
+ */
+public final class GenerationMix {
+
+    private static final PlantCategory[] CATEGORIES = PlantCategory.values();
+
+    private final double[] generatedMW;
+    private int reported;
+    private Map<String, Double> mapView;
+
+    public GenerationMix() {
+        generatedMW = new double[CATEGORIES.length];
+    }
+
+    GenerationMix(double[] generatedMW, int reported) {
+        this.generatedMW = generatedMW;
+        this.reported = reported;
+    }
+
+    public double get(PlantCategory category) {
+        return generatedMW[category.ordinal()];
+    }
+
+    public boolean isReported(PlantCategory category) {
+        return (reported & (1 << category.ordinal())) != 0;
+    }
+
+    public boolean isEmpty() {
+        return reported == 0;
+    }
+
+    /**
+     * Read-only view of the reported categories keyed by their display name,
+     * iterated in category order.
+     */
+    public Map<String, Double> asMap() {
+        if (mapView == null) {
+            mapView = new MapView();
+        }
+        return mapView;
+    }
+
+    int reportedMask() {
+        return reported;
+    }
+
+    void add(PlantCategory category, double mw) {
+        generatedMW[category.ordinal()] += mw;
+        reported |= 1 << category.ordinal();
+    }
+
+    void set(PlantCategory category, double mw) {
+        generatedMW[category.ordinal()] = mw;
+        reported |= 1 << category.ordinal();
+    }
+
+    void remove(PlantCategory category) {
+        generatedMW[category.ordinal()] = 0.0;
+        reported &= ~(1 << category.ordinal());
+    }
+
+    void clear() {
+        Arrays.fill(generatedMW, 0.0);
+        reported = 0;
+    }
+
+    GenerationMix copy() {
+        return new GenerationMix(generatedMW.clone(), reported);
+    }
+
+    private final class MapView extends AbstractMap<String, Double> {
+
+        @Override
+        public int size() {
+            return Integer.bitCount(reported);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return categoryOf(key) != null;
+        }
+
+        @Override
+        public Double get(Object key) {
+            PlantCategory category = categoryOf(key);
+            return category != null ? generatedMW[category.ordinal()] : null;
+        }
+
+        private PlantCategory categoryOf(Object key) {
+            if (!(key instanceof String type)) return null;
+            PlantCategory category = PlantCategory.fromType(type);
+            return category.getDisplayName().equals(type) && isReported(category) ? category : null;
+        }
+
+        @Override
+        public Set<Entry<String, Double>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return Integer.bitCount(reported);
+                }
+
+                @Override
+                public Iterator<Entry<String, Double>> iterator() {
+                    return new Iterator<>() {
+                        private int remaining = reported;
+
+                        @Override
+                        public boolean hasNext() {
+                            return remaining != 0;
+                        }
+
+                        @Override
+                        public Entry<String, Double> next() {
+                            if (remaining == 0) throw new NoSuchElementException();
+                            int ordinal = Integer.numberOfTrailingZeros(remaining);
+                            remaining &= remaining - 1;
+                            return Map.entry(CATEGORIES[ordinal].getDisplayName(), generatedMW[ordinal]);
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -8,15 +8,30 @@ public class MinuteSimulationResult {
     private double generatedMW;
     private double expectedDemandMW;
     private double averageStability;
-    private Map<String, Double> generatedByTypeMW;
+    private GenerationMix generation;
 
     public MinuteSimulationResult(LocalDateTime time, double generatedMW, double expectedDemandMW,
-                                  double averageStability, Map<String, Double> generatedByTypeMW) {
+                                  double averageStability, GenerationMix generation) {
         this.time = time;
         this.generatedMW = generatedMW;
         this.expectedDemandMW = expectedDemandMW;
         this.averageStability = averageStability;
-        this.generatedByTypeMW = generatedByTypeMW;
+        this.generation = generation;
+    }
+
+    /**
+     * Same as above with the generation keyed by type or display name, as
+     * before {@link GenerationMix}. Unknown types count as "Other".
+     */
+    public MinuteSimulationResult(LocalDateTime time, double generatedMW, double expectedDemandMW,
+                                  double averageStability, Map<String, Double> generatedByTypeMW) {
+        this(time, generatedMW, expectedDemandMW, averageStability, toMix(generatedByTypeMW));
+    }
+
+    private static GenerationMix toMix(Map<String, Double> generatedByTypeMW) {
+        GenerationMix mix = new GenerationMix();
+        generatedByTypeMW.forEach((type, mw) -> mix.add(PlantCategory.fromType(type), mw));
+        return mix;
     }
 
     // Getters
@@ -25,5 +40,7 @@ public class MinuteSimulationResult {
     public double getGeneratedMW() { return generatedMW; }
     public double getExpectedDemandMW() { return expectedDemandMW; }
     public double getAverageStability() { return averageStability; }
-    public Map<String, Double> getGeneratedByTypeMW() { return generatedByTypeMW; }
+    public GenerationMix getGeneration() { return generation; }
+    public double getGeneratedMW(PlantCategory category) { return generation.get(category); }
+    public Map<String, Double> getGeneratedByTypeMW() { return generation.asMap(); }
 }
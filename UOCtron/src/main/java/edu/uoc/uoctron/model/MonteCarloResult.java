@@ -0,0 +1,157 @@
+package edu.uoc.uoctron.model;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Distribution of the generated MW and the average stability of every row
+ * over the samples of a {@link MonteCarloSimulation}. The samples are not
+ * kept: every row holds a fixed-size histogram per value, plus its exact
+ * minimum and maximum. Generation never exceeds the demand, so its histogram
+ * spans zero to the demand of the row; stability spans zero to one.
+ * <p>
+ * Percentiles are interpolated inside the histogram bins, so they are exact
+ * to a bin width (1/256 of the range) and never outside the observed range.
+ */
+public final class MonteCarloResult {
+
+    static final int BINS = 256;
+
+    private final LocalDateTime startDateTime;
+    private final SimulationOptions options;
+    private final int rows;
+    private final double[] upperMW;
+    private final Values generated;
+    private final Values stability;
+    private int samples;
+
+    MonteCarloResult(LocalDateTime startDateTime, SimulationOptions options, double[] upperMW) {
+        this.startDateTime = startDateTime;
+        this.options = options;
+        this.rows = upperMW.length;
+        this.upperMW = upperMW;
+        this.generated = new Values(rows);
+        this.stability = new Values(rows);
+    }
+
+    // Adds a simulated minute of the current sample
+    void add(int row, double generatedMW, double averageStability) {
+        generated.add(row, generatedMW, upperMW[row]);
+        stability.add(row, averageStability, 1.0);
+    }
+
+    // Counts a finished sample
+    void endSample() {
+        samples++;
+    }
+
+    // Adds the samples of another result over the same rows
+    void merge(MonteCarloResult other) {
+        generated.merge(other.generated);
+        stability.merge(other.stability);
+        samples += other.samples;
+    }
+
+    public LocalDateTime getStartDateTime() {
+        return startDateTime;
+    }
+
+    public SimulationOptions getOptions() {
+        return options;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    public LocalDateTime getTime(int row) {
+        return startDateTime.plusMinutes((long) Objects.checkIndex(row, rows) * options.getStepMinutes());
+    }
+
+    /**
+     * Generated MW of every row at the given percentile (0 to 100), e.g. 5,
+     * 50 and 95 for the lower, median and upper bands.
+     */
+    public double[] getGeneratedMW(double percentile) {
+        return generated.percentile(percentile, upperMW);
+    }
+
+    /**
+     * Average stability of every row at the given percentile (0 to 100).
+     */
+    public double[] getStability(double percentile) {
+        return stability.percentile(percentile, null);
+    }
+
+    // Histograms of one value, one row after another
+    private static final class Values {
+        final int[] counts;
+        final double[] min;
+        final double[] max;
+
+        Values(int rows) {
+            counts = new int[rows * BINS];
+            min = new double[rows];
+            max = new double[rows];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        }
+
+        void add(int row, double value, double upper) {
+            int bin = upper > 0 ? (int) (value / upper * BINS) : 0;
+            counts[row * BINS + Math.max(0, Math.min(BINS - 1, bin))]++;
+            if (value < min[row]) min[row] = value;
+            if (value > max[row]) max[row] = value;
+        }
+
+        void merge(Values other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            for (int row = 0; row < min.length; row++) {
+                min[row] = Math.min(min[row], other.min[row]);
+                max[row] = Math.max(max[row], other.max[row]);
+            }
+        }
+
+        // Upper bounds of the rows, null for values between zero and one
+        double[] percentile(double percentile, double[] upper) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100");
+            }
+            double[] values = new double[min.length];
+            for (int row = 0; row < values.length; row++) {
+                values[row] = percentile(row, percentile, upper != null ? upper[row] : 1.0);
+            }
+            return values;
+        }
+
+        private double percentile(int row, double percentile, double upper) {
+            int offset = row * BINS;
+            long total = 0;
+            for (int b = 0; b < BINS; b++) {
+                total += counts[offset + b];
+            }
+            if (total == 0) return Double.NaN;
+
+            double rank = percentile / 100 * total;
+            double width = upper / BINS;
+            long before = 0;
+            double value = max[row];
+            for (int b = 0; b < BINS; b++) {
+                int count = counts[offset + b];
+                if (count > 0 && before + count >= rank) {
+                    value = (b + (rank - before) / count) * width;
+                    break;
+                }
+                before += count;
+            }
+            return Math.max(min[row], Math.min(max[row], value));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package edu.uoc.uoctron.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Runs a blackout simulation many times, drawing the restart time,
+ * availability and renewable efficiency of every plant from an
+ * {@link UncertaintyModel}, and keeps the per-minute distribution of the
+ * results in a {@link MonteCarloResult}.
+ * <p>
+ * Every sample has its own random stream, split in order from the seed, so
+ * a sample always draws the same values whichever thread runs it. Samples are
+ * run in parallel on the common fork-join pool, one chunk per worker, and the
+ * chunk results are merged by adding their histograms. The same seed
+ * therefore always gives the same result.
+ */
+public final class MonteCarloSimulation {
+
+    private final LocalDateTime startDateTime;
+    private final SimulationOptions options;
+    private final UncertaintyModel model;
+    private final int samples;
+    private final long seed;
+
+    public MonteCarloSimulation(LocalDateTime startDateTime, SimulationOptions options, UncertaintyModel model,
+                                int samples, long seed) {
+        if (samples <= 0) {
+            throw new IllegalArgumentException("Samples must be positive");
+        }
+        this.startDateTime = startDateTime;
+        this.options = options;
+        this.model = model;
+        this.samples = samples;
+        this.seed = seed;
+    }
+
+    public MonteCarloResult run(PlantCatalog catalog, DemandForecast demand) {
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[samples];
+        for (int s = 0; s < samples; s++) {
+            streams[s] = root.split();
+        }
+
+        // Generation never exceeds the demand of the minute
+        double[] upperMW = new double[options.getRows()];
+        long startEpochMinute = DemandForecast.epochMinute(startDateTime);
+        for (int row = 0; row < upperMW.length; row++) {
+            upperMW[row] = demand.demandAt(startEpochMinute + (long) row * options.getStepMinutes());
+        }
+
+        int chunks = Math.min(samples, ForkJoinPool.getCommonPoolParallelism());
+        return IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(c -> {
+                    MonteCarloResult partial = new MonteCarloResult(startDateTime, options, upperMW);
+                    for (int s = (int) ((long) c * samples / chunks); s < (long) (c + 1) * samples / chunks; s++) {
+                        runSample(catalog, demand, streams[s], partial);
+                    }
+                    return partial;
+                })
+                .reduce((a, b) -> {
+                    a.merge(b);
+                    return a;
+                })
+                .orElseThrow();
+    }
+
+    private void runSample(PlantCatalog catalog, DemandForecast demand, SplittableRandom random,
+                           MonteCarloResult result) {
+        List<NuclearPlant> plants = catalog.asList();
+        int[] onlineFrom = new int[plants.size()];
+        int[] runsOut = new int[plants.size()];
+        double[] efficiency = new double[plants.size()];
+        for (int id = 0; id < plants.size(); id++) {
+            NuclearPlant plant = plants.get(id);
+            onlineFrom[id] = model.drawOnlineMinute(plant, random);
+            runsOut[id] = model.drawRunOutMinute(plant, random);
+            efficiency[id] = model.drawEfficiency(plant, random);
+        }
+
+        int step = options.getStepMinutes();
+        new Simulation(startDateTime, options).simulate(catalog, demand,
+                new RecoverySchedule(plants, onlineFrom, runsOut), efficiency,
+                (minute, generated, expectedDemand, stability, mix) -> {
+                    result.add(minute / step, generated, stability);
+                    return true;
+                });
+        result.endSample();
+    }
+}
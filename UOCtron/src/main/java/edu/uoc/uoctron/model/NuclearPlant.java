@@ -2,18 +2,23 @@ package edu.uoc.uoctron.model;
 
 import java.time.Duration;
 
+/**
+ * Definition of a generating plant. Plants are immutable so a loaded catalog
+ * can be shared by any number of simulations; the state that changes during
+ * a run lives in {@link SimulationState}.
+ */
 public class NuclearPlant {
 
-    protected String name;
-    protected String type;
-    protected String city;
-    protected double latitude;
-    protected double longitude;
-    protected double maxCapacityMW;
-    protected Duration availability;
-    protected Duration restartTime;
-    protected double stability;
-    protected String image;
+    protected final String name;
+    protected final String type;
+    protected final String city;
+    protected final double latitude;
+    protected final double longitude;
+    protected final double maxCapacityMW;
+    protected final Duration availability;
+    protected final Duration restartTime;
+    protected final double stability;
+    protected final String image;
 
     public NuclearPlant(String name, String type, String city, double latitude, double longitude,
                         double maxCapacityMW, Duration availability, Duration restartTime,
@@ -70,6 +75,7 @@ public class NuclearPlant {
 
     public String getName() { return name; }
     public String getType() { return getAdjustedType(); }
+    public PlantCategory getCategory() { return PlantCategory.fromType(type); }
     public String getCity() { return city; }
     public double getLatitude() { return latitude; }
     public double getLongitude() { return longitude; }
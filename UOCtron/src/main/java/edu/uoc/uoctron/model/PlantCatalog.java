@@ -0,0 +1,116 @@
+package edu.uoc.uoctron.model;
+
+import java.util.*;
+
+/**
+ * Immutable set of plants shared by every simulation of a controller. Each
+ * plant is identified by its position in the catalog (its id), which is the
+ * index used by the per-run arrays of {@link SimulationState}. The dispatch
+ * plan is built once with the catalog.
+ * <p>
+ * Besides the load order, the catalog keeps the plants grouped by category
+ * in contiguous ranges (keeping the load order inside each range), an index
+ * by name and a {@link SpatialIndex} by coordinates, so lookups never scan the
+ * whole catalog.
+ */
+public final class PlantCatalog {
+
+    private static final PlantCategory[] CATEGORIES = PlantCategory.values();
+
+    private final List<NuclearPlant> plants;
+
+    // Ids sorted by category: the ids of a category are
+    // byCategory[categoryStart[c]] to byCategory[categoryStart[c + 1] - 1]
+    private final int[] byCategory;
+    private final int[] categoryStart;
+    private final List<NuclearPlant> plantsByCategory;
+    private final Map<String, Integer> idsByName;
+
+    private final SimulationPlan plan;
+    private final SpatialIndex spatialIndex;
+
+    public PlantCatalog(Collection<? extends NuclearPlant> plants) {
+        this.plants = List.copyOf(plants);
+
+        categoryStart = new int[CATEGORIES.length + 1];
+        for (NuclearPlant p : this.plants) {
+            categoryStart[p.getCategory().ordinal() + 1]++;
+        }
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            categoryStart[c + 1] += categoryStart[c];
+        }
+        byCategory = new int[this.plants.size()];
+        int[] next = Arrays.copyOf(categoryStart, CATEGORIES.length);
+        NuclearPlant[] sorted = new NuclearPlant[this.plants.size()];
+        idsByName = new HashMap<>();
+        for (int id = 0; id < this.plants.size(); id++) {
+            NuclearPlant p = this.plants.get(id);
+            int position = next[p.getCategory().ordinal()]++;
+            byCategory[position] = id;
+            sorted[position] = p;
+            // With repeated names the first plant wins
+            idsByName.putIfAbsent(p.getName(), id);
+        }
+        plantsByCategory = List.of(sorted);
+
+        this.plan = new SimulationPlan(this);
+        this.spatialIndex = new SpatialIndex(this);
+    }
+
+    public int size() {
+        return plants.size();
+    }
+
+    public NuclearPlant get(int id) {
+        return plants.get(id);
+    }
+
+    public List<NuclearPlant> asList() {
+        return plants;
+    }
+
+    /**
+     * Id of the plant with the given name, or -1 if there is none.
+     */
+    public int idOf(String name) {
+        Integer id = idsByName.get(name);
+        return id != null ? id : -1;
+    }
+
+    public int count(PlantCategory category) {
+        return categoryStart[category.ordinal() + 1] - categoryStart[category.ordinal()];
+    }
+
+    /**
+     * Plants of the category in load order, as an unmodifiable view.
+     */
+    public List<NuclearPlant> getPlants(PlantCategory category) {
+        return plantsByCategory.subList(categoryStart[category.ordinal()], categoryStart[category.ordinal() + 1]);
+    }
+
+    // Ids of the plants of the category in load order
+    public int[] ids(PlantCategory category) {
+        return Arrays.copyOfRange(byCategory, categoryStart[category.ordinal()], categoryStart[category.ordinal() + 1]);
+    }
+
+    /**
+     * Index of the plants by coordinates, for region, radius and
+     * nearest-plant queries.
+     */
+    public SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    /**
+     * Categories a simulation over the catalog dispatches, and so the only
+     * ones its results can report. Plants of other categories (biomass and
+     * fuel gas among them) are loaded but never generate.
+     */
+    public Set<PlantCategory> getDispatchedCategories() {
+        return plan.dispatched();
+    }
+
+    SimulationPlan plan() {
+        return plan;
+    }
+}
@@ -0,0 +1,55 @@
+package edu.uoc.uoctron.model;
+
+/**
+ * Generation categories used to group plants during the simulation. The
+ * display name is the label used in the results and in the views.
+ */
+public enum PlantCategory {
+    HYDROELECTRIC("Hydroelectric", true),
+    WIND("Wind", true),
+    GEOTHERMAL("Geothermal", true),
+    SOLAR("Solar", true),
+    NUCLEAR("Nuclear", false),
+    COMBINED_CYCLE("Combined cycle", false),
+    COAL("Coal", false),
+    FUEL_GAS("Fuel gas", false),
+    BIOMASS("Biomass", false),
+    // Plants whose type is not recognised. They are never dispatched.
+    OTHER("Other", false);
+
+    private final String displayName;
+    private final boolean renewable;
+
+    PlantCategory(String displayName, boolean renewable) {
+        this.displayName = displayName;
+        this.renewable = renewable;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public boolean isRenewable() {
+        return renewable;
+    }
+
+    /**
+     * Resolves a category from either a raw type as written in the plants file
+     * (e.g. "combined_cycle") or a display name (e.g. "Combined cycle").
+     */
+    public static PlantCategory fromType(String type) {
+        if (type == null) return OTHER;
+        return switch (type.toLowerCase()) {
+            case "hydro", "hydroelectric" -> HYDROELECTRIC;
+            case "wind" -> WIND;
+            case "geothermal" -> GEOTHERMAL;
+            case "solar" -> SOLAR;
+            case "nuclear" -> NUCLEAR;
+            case "combined_cycle", "combined cycle" -> COMBINED_CYCLE;
+            case "coal" -> COAL;
+            case "fuel_gas", "fuel gas" -> FUEL_GAS;
+            case "biomass" -> BIOMASS;
+            default -> OTHER;
+        };
+    }
+}
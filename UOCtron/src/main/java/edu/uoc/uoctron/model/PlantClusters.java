@@ -0,0 +1,116 @@
+package edu.uoc.uoctron.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Plants of a {@link PlantCatalog} grouped so that plants too close to be
+ * told apart on a map are shown as a single marker. Clusters are built
+ * greedily in id order: the first plant not yet in a cluster starts one, and
+ * every other plant not yet in a cluster within the radius of it (in latitude
+ * and in longitude) joins it. Plants are only merged when they are that
+ * close, wherever they are, and the first plant of every cluster is more than
+ * the radius away from the first plant of every other.
+ * <p>
+ * The clusters are built once and do not depend on the area being looked at,
+ * so panning only adds and removes whole clusters. Both the building and
+ * {@link #within} go through the spatial index of the catalog.
+ */
+public final class PlantClusters {
+
+    /**
+     * Plants of a cluster, in increasing id order, the first one being the
+     * one that started it. The position is the average of their coordinates.
+     */
+    public record Cluster(int id, int[] plantIds, double latitude, double longitude, double totalCapacityMW) {
+
+        public int size() {
+            return plantIds.length;
+        }
+    }
+
+    private final SpatialIndex index;
+    private final double radiusLatitude;
+    private final double radiusLongitude;
+    // Clusters by id, which is also the order of their first plant, and the
+    // cluster of every plant
+    private final List<Cluster> clusters;
+    private final int[] clusterOfPlant;
+
+    public PlantClusters(PlantCatalog catalog, double radiusLatitude, double radiusLongitude) {
+        if (!(radiusLatitude >= 0) || !(radiusLongitude >= 0)) {
+            throw new IllegalArgumentException("The radius cannot be negative");
+        }
+        this.index = catalog.getSpatialIndex();
+        this.radiusLatitude = radiusLatitude;
+        this.radiusLongitude = radiusLongitude;
+
+        int n = catalog.size();
+        clusterOfPlant = new int[n];
+        Arrays.fill(clusterOfPlant, -1);
+        List<Cluster> built = new ArrayList<>();
+        int[] members = new int[n];
+        for (int seed = 0; seed < n; seed++) {
+            if (clusterOfPlant[seed] >= 0) continue;
+            NuclearPlant first = catalog.get(seed);
+            int[] near = index.withinBox(first.getLatitude() - radiusLatitude, first.getLongitude() - radiusLongitude,
+                    first.getLatitude() + radiusLatitude, first.getLongitude() + radiusLongitude);
+
+            // The ids come sorted, and the seed is the lowest one left
+            int size = 0;
+            double latitude = 0;
+            double longitude = 0;
+            double capacity = 0;
+            for (int id : near) {
+                if (clusterOfPlant[id] >= 0) continue;
+                NuclearPlant p = catalog.get(id);
+                clusterOfPlant[id] = built.size();
+                members[size++] = id;
+                latitude += p.getLatitude();
+                longitude += p.getLongitude();
+                capacity += p.getMaxCapacityMW();
+            }
+            built.add(new Cluster(built.size(), Arrays.copyOf(members, size), latitude / size,
+                    longitude / size, capacity));
+        }
+        this.clusters = List.copyOf(built);
+    }
+
+    /**
+     * Clusters whose position is inside the box, edges included, ordered by
+     * id. The box must not cross the antimeridian.
+     */
+    public List<Cluster> within(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        // Every plant of a cluster is at most twice the radius away from its
+        // position, so the box widened by that finds at least one of them
+        int[] ids = index.withinBox(minLatitude - 2 * radiusLatitude, minLongitude - 2 * radiusLongitude,
+                maxLatitude + 2 * radiusLatitude, maxLongitude + 2 * radiusLongitude);
+        BitSet found = new BitSet(clusters.size());
+        for (int id : ids) {
+            found.set(clusterOfPlant[id]);
+        }
+        List<Cluster> visible = new ArrayList<>();
+        for (int c = found.nextSetBit(0); c >= 0; c = found.nextSetBit(c + 1)) {
+            Cluster cluster = clusters.get(c);
+            if (cluster.latitude() >= minLatitude && cluster.latitude() <= maxLatitude
+                    && cluster.longitude() >= minLongitude && cluster.longitude() <= maxLongitude) {
+                visible.add(cluster);
+            }
+        }
+        return visible;
+    }
+
+    public Cluster clusterOf(int plantId) {
+        return clusters.get(clusterOfPlant[plantId]);
+    }
+
+    public List<Cluster> getClusters() {
+        return clusters;
+    }
+
+    public int size() {
+        return clusters.size();
+    }
+}
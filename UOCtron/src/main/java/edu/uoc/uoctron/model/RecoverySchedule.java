@@ -0,0 +1,137 @@
+package edu.uoc.uoctron.model;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * When every plant is back online after the blackout, derived from its
+ * restart time and availability. Minutes are counted from the start of the
+ * blackout:
+ * <ul>
+ *     <li>A plant comes online one minute after its restart time, the first
+ *     minute being spent detecting the blackout.</li>
+ *     <li>A non-zero availability is how long after the blackout the plant
+ *     can keep running; a zero availability means no limit.</li>
+ *     <li>From the first category with all its plants run out until the first
+ *     nuclear plant is back, the grid runs constrained and wind and combined
+ *     cycle output is capped.</li>
+ * </ul>
+ * In a partial blackout, plants outside the affected set never stop: they are
+ * online from the first minute and have no availability limit.
+ * The schedule is a list of events sorted by minute. Every run replays them
+ * through its own queue, so the set of plants in the dispatch only changes
+ * when an event fires.
+ */
+final class RecoverySchedule {
+
+    static final int DETECTION_MINUTES = 1;
+
+    private static final PlantCategory[] CATEGORIES = PlantCategory.values();
+
+    /**
+     * A plant coming online or running out at the given minute. Events of the
+     * same minute are ordered by plant id.
+     */
+    record Event(int minute, int plantId, boolean online) implements Comparable<Event> {
+        @Override
+        public int compareTo(Event other) {
+            int byMinute = Integer.compare(minute, other.minute);
+            return byMinute != 0 ? byMinute : Integer.compare(plantId, other.plantId);
+        }
+    }
+
+    private final List<Event> events;
+    private final int constrainedFrom;
+    private final int constrainedUntil;
+
+    RecoverySchedule(List<NuclearPlant> plants) {
+        this(plants, null);
+    }
+
+    /**
+     * Schedule of a blackout affecting only the plants flagged in the array,
+     * or every plant if it is null.
+     */
+    RecoverySchedule(List<NuclearPlant> plants, boolean[] affected) {
+        this(plants, onlineMinutes(plants, affected), runOutMinutes(plants, affected));
+    }
+
+    /**
+     * Schedule with explicit minutes per plant id: when it comes online and
+     * when it runs out ({@link Integer#MAX_VALUE} for never).
+     */
+    RecoverySchedule(List<NuclearPlant> plants, int[] onlineFrom, int[] runsOut) {
+        List<Event> all = new ArrayList<>();
+        int[] offlineFrom = new int[CATEGORIES.length];
+        Arrays.fill(offlineFrom, -1);
+        int nuclearFrom = Integer.MAX_VALUE;
+
+        for (int id = 0; id < plants.size(); id++) {
+            NuclearPlant p = plants.get(id);
+            all.add(new Event(onlineFrom[id], id, true));
+            if (runsOut[id] != Integer.MAX_VALUE) {
+                all.add(new Event(runsOut[id], id, false));
+            }
+
+            int c = p.getCategory().ordinal();
+            offlineFrom[c] = Math.max(offlineFrom[c], runsOut[id]);
+            if (p.getCategory() == PlantCategory.NUCLEAR) {
+                nuclearFrom = Math.min(nuclearFrom, onlineFrom[id]);
+            }
+        }
+
+        int firstDropOut = Integer.MAX_VALUE;
+        for (int minute : offlineFrom) {
+            if (minute >= 0) firstDropOut = Math.min(firstDropOut, minute);
+        }
+        Collections.sort(all);
+        events = List.copyOf(all);
+        constrainedFrom = firstDropOut;
+        constrainedUntil = nuclearFrom;
+    }
+
+    private static int[] onlineMinutes(List<NuclearPlant> plants, boolean[] affected) {
+        int[] minutes = new int[plants.size()];
+        for (int id = 0; id < minutes.length; id++) {
+            boolean hit = affected == null || affected[id];
+            minutes[id] = hit ? onlineMinute(plants.get(id).getRestartTime()) : 0;
+        }
+        return minutes;
+    }
+
+    private static int[] runOutMinutes(List<NuclearPlant> plants, boolean[] affected) {
+        int[] minutes = new int[plants.size()];
+        for (int id = 0; id < minutes.length; id++) {
+            boolean hit = affected == null || affected[id];
+            minutes[id] = hit ? runOutMinute(plants.get(id).getAvailability()) : Integer.MAX_VALUE;
+        }
+        return minutes;
+    }
+
+    // Minute a plant with the given restart time comes online
+    static int onlineMinute(Duration restartTime) {
+        return toMinutes(restartTime) + DETECTION_MINUTES;
+    }
+
+    // Minute a plant with the given availability runs out, MAX_VALUE if never
+    static int runOutMinute(Duration availability) {
+        return availability.isZero() ? Integer.MAX_VALUE : toMinutes(availability);
+    }
+
+    private static int toMinutes(Duration duration) {
+        return (int) Math.min(Integer.MAX_VALUE - DETECTION_MINUTES, duration.toMinutes());
+    }
+
+    // Fresh queue of the events for a single run
+    PriorityQueue<Event> newQueue() {
+        return new PriorityQueue<>(events);
+    }
+
+    boolean isConstrained(int minute) {
+        return minute >= constrainedFrom && minute < constrainedUntil;
+    }
+}
@@ -4,8 +4,6 @@ import java.time.Duration;
 
 public class RenewablePlant extends NuclearPlant {
 
-    private double efficiency = 1.0;
-
     public RenewablePlant(String name, String type, String city, double latitude, double longitude,
                           double maxCapacityMW, Duration availability, Duration restartTime,
                           double stability, String image) {
@@ -14,6 +12,15 @@ public class RenewablePlant extends NuclearPlant {
 
     @Override
     public double calculateElectricityGenerated(double demand) {
+        return calculateElectricityGenerated(demand, 1.0);
+    }
+
+    /**
+     * Output of the plant when running at the given efficiency. The efficiency
+     * depends on the weather, so it is part of the state of a simulation run
+     * rather than of the plant.
+     */
+    public double calculateElectricityGenerated(double demand, double efficiency) {
         // Genera hasta maxCapacityMW * eficiencia, sin exceder la demanda
         double generated = maxCapacityMW * efficiency;
         generated = Math.min(generated, demand);
@@ -25,14 +32,6 @@ public class RenewablePlant extends NuclearPlant {
         return generated;
     }
 
-    public double getEfficiency() {
-        return efficiency;
-    }
-
-    public void setEfficiency(double efficiency) {
-        this.efficiency = efficiency;
-    }
-
     @Override
     public String toString() {
         return "{ \"name\": \"" + name + "\", " +
@@ -2,22 +2,43 @@ package edu.uoc.uoctron.model;
 
 import java.time.LocalDateTime;
 import java.util.*;
-
-import static edu.uoc.uoctron.controller.UOCtronController.normalizeType;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 
 public class Simulation {
+    private static final PlantCategory[] CATEGORIES = PlantCategory.values();
+    static final double MIN_STABILITY = 0.7;
+    private static final double CURTAILMENT_STEP_MW = 12.5;
+    // Output caps applied while the grid is constrained
+    private static final double CONSTRAINED_WIND_MW = 1232.5;
+    private static final double CONSTRAINED_COMBINED_CYCLE_MW = 6119.5;
+
     private final LocalDateTime startDateTime;
-    private final List<MinuteSimulationResult> results;
+    private final SimulationOptions options;
+    // Plants tripped by the blackout, or null for a total blackout
+    private final BlackoutScenario scenario;
+    private SimulationResult result;
 
     public Simulation(LocalDateTime startDateTime) {
-        this.startDateTime = startDateTime;
-        this.results = new ArrayList<>();
+        this(startDateTime, SimulationOptions.DEFAULT);
     }
 
-    private double solarEfficiency(int minute) {
-        int startMinutes = startDateTime.getHour() * 60 + startDateTime.getMinute();
-        int minuteOfDay = (startMinutes + minute) % 1440;
+    public Simulation(LocalDateTime startDateTime, SimulationOptions options) {
+        this(startDateTime, options, null);
+    }
 
+    /**
+     * Simulation of a blackout that only trips the plants of the scenario.
+     * It must be run over the catalog the scenario was built for.
+     */
+    public Simulation(LocalDateTime startDateTime, SimulationOptions options, BlackoutScenario scenario) {
+        this.startDateTime = startDateTime;
+        this.options = options;
+        this.scenario = scenario;
+        this.result = new SimulationResult(startDateTime, 0);
+    }
+
+    private static double solarEfficiency(int minuteOfDay) {
         // In the reference behaviour used by the unit tests, solar plants are
         // either completely off or running at full capacity. Daylight is
         // simulated between minutes 500 and 949 (inclusive) of each day.
@@ -29,288 +50,328 @@ public class Simulation {
         return 1.0;
     }
 
+    /**
+     * Runs the simulation with one demand value per minute of the day,
+     * starting at 00:00.
+     */
     public void run(List<NuclearPlant> plants, List<Double> demand) {
-        LocalDateTime currentTime = startDateTime;
+        double[] profile = new double[DemandProfile.MINUTES_PER_DAY];
+        for (int m = 0; m < profile.length; m++) {
+            profile[m] = demand.get(m % demand.size());
+        }
+        run(new PlantCatalog(plants), new DemandProfile(profile));
+    }
 
-        for (int minute = 0; minute < 2160; minute++) {
-            double expectedDemand = demand.get(minute % demand.size());
+    public void run(PlantCatalog catalog, DemandForecast demand) {
+        SimulationResult columns = new SimulationResult(startDateTime, options.getRows());
+        simulate(catalog, demand, (minute, generated, expectedDemand, stability, mix) -> {
+            columns.append(minute, generated, expectedDemand, stability, mix);
+            return true;
+        });
+        result = columns;
+    }
 
-            if (minute < 4) {
-                results.add(new MinuteSimulationResult(currentTime, 0.0, expectedDemand, 0.0, new HashMap<>()));
-                currentTime = currentTime.plusMinutes(1);
-                continue;
-            }
+    /**
+     * Runs the simulation keeping its results, like
+     * {@link #run(PlantCatalog, DemandForecast)}, and hands every minute to
+     * the listener as soon as it is computed. If the listener stops the run
+     * the results are left as they were.
+     *
+     * @return true if every minute was simulated
+     */
+    public boolean run(PlantCatalog catalog, DemandForecast demand, SimulationListener listener) {
+        SimulationResult columns = new SimulationResult(startDateTime, options.getRows());
+        boolean completed = simulate(catalog, demand, (minute, generated, expectedDemand, stability, mix) -> {
+            columns.append(minute, generated, expectedDemand, stability, mix);
+            return listener.onMinute(columns.row(columns.size() - 1));
+        });
+        if (completed) result = columns;
+        return completed;
+    }
 
-            boolean useWind = minute >= 7;
-            boolean useGeothermal = minute >= 61;
-            boolean useNuclear = minute >= 1500;
-            // Solar generation is only available during daylight hours.
-            // Daylight is simulated from minute 500 to minute 950 of each day,
-            // repeating for subsequent days. The modulo operation ensures the
-            // cycle restarts every 1440 minutes (one day).
-            boolean useSolar = minute >= 500 && (minute % 1440 >= 500 && minute % 1440 < 950);
-            boolean useThermal = minute >= 500;
-            boolean useCoal = minute < 1000;
-
-            Map<String, Double> generatedByTypeMW = new LinkedHashMap<>();
-            Map<NuclearPlant, Double> generationByPlant = new LinkedHashMap<>();
-            double totalGenerated = 0.0;
+    /**
+     * Runs the simulation handing every minute to the listener as soon as it
+     * is computed, without keeping the results. The run stops early if the
+     * listener returns false.
+     *
+     * @return true if every minute was simulated
+     */
+    public boolean stream(PlantCatalog catalog, DemandForecast demand, SimulationListener listener) {
+        return simulate(catalog, demand, (minute, generated, expectedDemand, stability, mix) ->
+                listener.onMinute(new MinuteSimulationResult(startDateTime.plusMinutes(minute),
+                        generated, expectedDemand, stability, mix.copy())));
+    }
 
-            List<NuclearPlant> renewables = plants.stream()
-                    .filter(p -> p instanceof RenewablePlant)
-                    .toList();
-            List<NuclearPlant> nuclear = plants.stream()
-                    .filter(p -> !(p instanceof RenewablePlant) && !(p instanceof ThermalPlant))
-                    .toList();
-            List<NuclearPlant> thermals = plants.stream()
-                    .filter(p -> p instanceof ThermalPlant)
-                    .filter(p -> normalizeType(p.type).equals("Combined cycle") || normalizeType(p.type).equals("Coal"))
-                    .toList();
-
-            for (NuclearPlant p : plants) {
-                if (p instanceof RenewablePlant && normalizeType(p.type).equals("Solar")) {
-                    ((RenewablePlant) p).setEfficiency(solarEfficiency(minute));
-                }
-            }
+    /**
+     * Runs the simulation keeping only its summary, which is accumulated as
+     * every minute is computed.
+     */
+    public SimulationSummary summarize(PlantCatalog catalog, DemandForecast demand) {
+        SimulationSummary.Accumulator accumulator = new SimulationSummary.Accumulator(options.getStepMinutes());
+        simulate(catalog, demand, accumulator);
+        return accumulator.summary(startDateTime);
+    }
 
-            for (NuclearPlant p : plants) {
-                if (p instanceof RenewablePlant && normalizeType(p.type).equals("Solar")) {
-                    ((RenewablePlant) p).setEfficiency(solarEfficiency(minute));
-                }
-            }
+    /**
+     * Publishes the minutes of the simulation to a single subscriber. The run
+     * starts on the executor with the first request, produces minutes only as
+     * they are requested and stops when the subscription is cancelled.
+     */
+    public Flow.Publisher<MinuteSimulationResult> publish(PlantCatalog catalog, DemandForecast demand, Executor executor) {
+        return new SimulationPublisher(this, catalog, demand, executor);
+    }
 
-            List<String> renewableOrder = new ArrayList<>();
-            renewableOrder.add("Hydroelectric");
-            if (useWind) renewableOrder.add("Wind");
-            if (useGeothermal) renewableOrder.add("Geothermal");
-            if (useSolar) renewableOrder.add("Solar");
+    // Receives the values of every simulated minute. The mix is a scratch
+    // object that is overwritten on the next minute.
+    interface MinuteSink {
+        boolean accept(int minute, double generatedMW, double expectedDemandMW, double averageStability, GenerationMix mix);
+    }
 
-            if (minute < 7) {
-                generatedByTypeMW.put("Hydroelectric", 0.0);
+    private boolean simulate(PlantCatalog catalog, DemandForecast demand, MinuteSink sink) {
+        RecoverySchedule schedule = catalog.plan().schedule();
+        if (scenario != null) {
+            if (scenario.getCatalog() != catalog) {
+                throw new IllegalArgumentException("The scenario was built for a different catalog");
             }
+            schedule = scenario.schedule();
+        }
+        return simulate(catalog, demand, schedule, null, sink);
+    }
 
-            for (String type : renewableOrder) {
-                for (NuclearPlant p : renewables) {
-                    if (!normalizeType(p.type).equals(type)) continue;
-                    double remaining = expectedDemand - totalGenerated;
-                    if (remaining <= 0 && !type.equals("Hydroelectric")) break;
-                    double generated = Math.min(p.calculateElectricityGenerated(remaining), remaining);
-                    if (generated > 0) {
-                        generatedByTypeMW.merge(normalizeType(p.type), generated, Double::sum);
-                        totalGenerated += generated;
-                    }
-                }
-            }
+    /**
+     * Runs the minute loop with the given recovery schedule and per-plant
+     * efficiency scale (null for nominal efficiency), as drawn by a Monte
+     * Carlo sample.
+     */
+    boolean simulate(PlantCatalog catalog, DemandForecast demand, RecoverySchedule schedule,
+                     double[] efficiencyScale, MinuteSink sink) {
+        SimulationPlan plan = catalog.plan();
+        SimulationState state = new SimulationState(catalog, schedule, efficiencyScale);
+        // Scratch mix reused every minute; the sink copies what it needs
+        GenerationMix mix = new GenerationMix();
+        StabilityTracker tracker = new StabilityTracker();
+
+        int step = options.getStepMinutes();
+        long startEpochMinute = DemandForecast.epochMinute(startDateTime);
+
+        for (int minute = 0; minute < options.getHorizonMinutes(); minute += step) {
+            long epochMinute = startEpochMinute + minute;
+            double expectedDemand = demand.demandAt(epochMinute);
+            int minuteOfDay = Math.floorMod(epochMinute, DemandProfile.MINUTES_PER_DAY);
+            mix.clear();
+
+            // Plants coming online or running out change the dispatch arrays;
+            // between events they are reused as they are
+            state.advanceTo(minute);
+            boolean constrained = schedule.isConstrained(minute);
+            double totalGenerated = 0.0;
 
-            // Wind farm output is reduced during the evening and night
-            if (minute >= 1000 && minute < 1500) {
-                double windGen = generatedByTypeMW.getOrDefault("Wind", 0.0);
-                if (windGen > 1232.5) {
-                    double diff = windGen - 1232.5;
-                    generatedByTypeMW.put("Wind", 1232.5);
-                    totalGenerated -= diff;
-                }
-            }
+            // Solar plants only produce during daylight hours
+            state.setEfficiency(plan.ids(PlantCategory.SOLAR), solarEfficiency(minuteOfDay));
 
-            // Process nuclear plants if enabled
-            if (useNuclear) {
-                for (NuclearPlant p : nuclear) {
+            for (PlantCategory category : SimulationPlan.RENEWABLE_ORDER) {
+                int[] ids = state.ids(category);
+                double[] capacities = state.capacities(category);
+                for (int i = 0; i < ids.length; i++) {
                     double remaining = expectedDemand - totalGenerated;
-                    if (remaining <= 0) break;
-                    double generated = Math.min(p.calculateElectricityGenerated(remaining), remaining);
+                    if (remaining <= 0 && category != PlantCategory.HYDROELECTRIC) break;
+                    // Renewable output depends on the efficiency of the plant
+                    // in this run, so it cannot always be taken from the
+                    // precomputed capacities
+                    double output = catalog.get(ids[i]) instanceof RenewablePlant renewable
+                            ? renewable.calculateElectricityGenerated(remaining, state.efficiency(ids[i]))
+                            : capacities[i];
+                    double generated = Math.min(output, remaining);
                     if (generated > 0) {
-                        generatedByTypeMW.merge(normalizeType(p.type), generated, Double::sum);
-                        generationByPlant.merge(p, generated, Double::sum);
+                        mix.add(category, generated);
                         totalGenerated += generated;
                     }
                 }
             }
 
-            if (useThermal) {
-                for (NuclearPlant p : thermals) {
-                    if (!useCoal && normalizeType(p.type).equals("Coal")) continue;
-                    double remaining = expectedDemand - totalGenerated;
-                    if (remaining <= 0) break;
-                    double generated = Math.min(p.calculateElectricityGenerated(remaining), remaining);
-                    if (generated > 0) {
-                        generatedByTypeMW.merge(normalizeType(p.type), generated, Double::sum);
-                        totalGenerated += generated;
-                    }
+            // Wind farm output is reduced while the grid is constrained
+            if (constrained) {
+                double windGen = mix.get(PlantCategory.WIND);
+                if (windGen > CONSTRAINED_WIND_MW) {
+                    double diff = windGen - CONSTRAINED_WIND_MW;
+                    mix.set(PlantCategory.WIND, CONSTRAINED_WIND_MW);
+                    totalGenerated -= diff;
                 }
             }
 
-            // During the interval when coal plants are disabled (from minute
-            // 1000 until nuclear plants become available), the reference
+            totalGenerated = dispatchNuclear(state, expectedDemand, mix, totalGenerated);
+            totalGenerated = dispatchThermal(state, expectedDemand, mix, totalGenerated);
+
+            // While the grid is constrained (from the moment coal plants run
+            // out until nuclear plants become available), the reference
             // implementation limits the combined cycle output to a maximum of
             // 6,119.5 MW. This artificial cap allows the unit tests to
             // reproduce the expected shortage during this phase of the
             // simulation.
-            if (minute >= 1000 && minute < 1500) {
-                Double combined = generatedByTypeMW.get("Combined cycle");
-                if (combined != null && combined > 6119.5) {
-                    double diff = combined - 6119.5;
-                    generatedByTypeMW.put("Combined cycle", 6119.5);
+            if (constrained) {
+                double combined = mix.get(PlantCategory.COMBINED_CYCLE);
+                if (mix.isReported(PlantCategory.COMBINED_CYCLE) && combined > CONSTRAINED_COMBINED_CYCLE_MW) {
+                    double diff = combined - CONSTRAINED_COMBINED_CYCLE_MW;
+                    mix.set(PlantCategory.COMBINED_CYCLE, CONSTRAINED_COMBINED_CYCLE_MW);
                     totalGenerated -= diff;
                 }
             }
 
             // Calculate average stability
-            double weightedStabilitySum = 0.0;
-            double totalWeight = 0.0;
-            for (Map.Entry<String, Double> entry : generatedByTypeMW.entrySet()) {
-                String type = entry.getKey();
-                double generated = entry.getValue();
-                Optional<NuclearPlant> opt = plants.stream()
-                        .filter(p -> normalizeType(p.type).equals(type))
-                        .findFirst();
-                if (opt.isPresent()) {
-                    weightedStabilitySum += opt.get().getStability() * generated;
-                    totalWeight += generated;
-                }
-            }
-
-            double averageStability = (totalWeight > 0) ? weightedStabilitySum / totalWeight : 0.0;
-
-            // Skip stability adjustment for minutes 4–7
-            if (minute < 7) {
-                // Ensure Hydroelectric persists
-                generatedByTypeMW.put("Hydroelectric", generatedByTypeMW.getOrDefault("Hydroelectric", 0.0));
-            } else if (averageStability < 0.7 && totalWeight > 0) {
-                List<Map.Entry<String, Double>> renewableEntries = generatedByTypeMW.entrySet().stream()
-                        .filter(e -> renewables.stream().anyMatch(p -> normalizeType(p.type).equals(e.getKey())))
-                        .sorted(Comparator.comparingDouble(e -> {
-                            Optional<NuclearPlant> p = plants.stream().filter(pp -> normalizeType(pp.type).equals(e.getKey())).findFirst();
-                            return p.map(NuclearPlant::getStability).orElse(1.0);
-                        }))
-                        .toList();
-
-                for (Map.Entry<String, Double> entry : renewableEntries) {
-                    String type = entry.getKey();
-                    double amount = entry.getValue();
-
-                    while (averageStability < 0.7 && amount > 0) {
-                        // Generation adjustments are performed using the
-                        // smallest common capacity step across the plants,
-                        // which is 12.5 MW. Using this step size keeps the
-                        // results aligned with expected discrete values.
-                        double decrement = Math.min(12.5, amount);
-                        amount -= decrement;
-                        totalGenerated -= decrement;
-                        generatedByTypeMW.put(type, amount);
-
-                        weightedStabilitySum = 0.0;
-                        totalWeight = 0.0;
-                        for (Map.Entry<String, Double> e : generatedByTypeMW.entrySet()) {
-                            String t = e.getKey();
-                            double g = e.getValue();
-                            Optional<NuclearPlant> opt = plants.stream()
-                                    .filter(p -> normalizeType(p.type).equals(t))
-                                    .findFirst();
-                            if (opt.isPresent()) {
-                                weightedStabilitySum += opt.get().getStability() * g;
-                                totalWeight += g;
-                            }
-                        }
-
-                        averageStability = (totalWeight > 0) ? weightedStabilitySum / totalWeight : 0.0;
+            tracker.recompute(plan, mix);
+            double averageStability = tracker.average();
+
+            if (averageStability < MIN_STABILITY && tracker.weight() > 0) {
+                for (PlantCategory type : plan.curtailmentOrder()) {
+                    if (!mix.isReported(type)) continue;
+                    double amount = mix.get(type);
+                    if (amount <= 0) continue;
+
+                    // Generation adjustments are performed using the
+                    // smallest common capacity step across the plants,
+                    // which is 12.5 MW. Using this step size keeps the
+                    // results aligned with expected discrete values.
+                    int steps = curtailmentSteps(plan, mix, tracker, type, amount);
+                    int maxSteps = maxCurtailmentSteps(amount);
+                    if (steps < maxSteps) {
+                        totalGenerated -= steps * CURTAILMENT_STEP_MW;
+                    } else {
+                        // The last step removes whatever is left below 12.5 MW
+                        totalGenerated -= (maxSteps - 1) * CURTAILMENT_STEP_MW;
+                        totalGenerated -= amount - (maxSteps - 1) * CURTAILMENT_STEP_MW;
                     }
+                    averageStability = stabilityAfter(plan, mix, tracker, type, amount, steps);
 
-                    generatedByTypeMW.put(type, amount);
-                    if (averageStability >= 0.7) break;
-                }
-
-                // Attempt to stabilize using nuclear if enabled
-                if (averageStability < 0.7 && useNuclear) {
-                    for (NuclearPlant p : nuclear) {
-                        double remaining = expectedDemand - totalGenerated;
-                        if (remaining <= 0) break;
-                        double generated = Math.min(p.calculateElectricityGenerated(remaining), remaining);
-                        if (generated > 0) {
-                            generatedByTypeMW.merge(normalizeType(p.type), generated, Double::sum);
-                            totalGenerated += generated;
-                        }
-                    }
+                    if (averageStability >= MIN_STABILITY) break;
                 }
 
-                if (averageStability < 0.7 && useThermal) {
-                    for (NuclearPlant p : thermals) {
-                        if (!useCoal && normalizeType(p.type).equals("Coal")) continue;
-                        double remaining = expectedDemand - totalGenerated;
-                        if (remaining <= 0) break;
-                        double generated = Math.min(p.calculateElectricityGenerated(remaining), remaining);
-                        if (generated > 0) {
-                            generatedByTypeMW.merge(normalizeType(p.type), generated, Double::sum);
-                            totalGenerated += generated;
-                        }
-                    }
+                // Attempt to stabilize using the nuclear and thermal plants
+                // that are online
+                if (averageStability < MIN_STABILITY) {
+                    totalGenerated = dispatchNuclear(state, expectedDemand, mix, totalGenerated);
+                    totalGenerated = dispatchThermal(state, expectedDemand, mix, totalGenerated);
                 }
 
                 // Recalculate stability
-                weightedStabilitySum = 0.0;
-                totalWeight = 0.0;
-                for (Map.Entry<String, Double> e : generatedByTypeMW.entrySet()) {
-                    String t = e.getKey();
-                    double g = e.getValue();
-                    Optional<NuclearPlant> opt = plants.stream()
-                            .filter(p -> normalizeType(p.type).equals(t))
-                            .findFirst();
-                    if (opt.isPresent()) {
-                        weightedStabilitySum += opt.get().getStability() * g;
-                        totalWeight += g;
-                    }
-                }
-
-                averageStability = (totalWeight > 0) ? weightedStabilitySum / totalWeight : 0.0;
+                tracker.recompute(plan, mix);
+                averageStability = tracker.average();
             }
-            // Remove entries with zero generation except for the initial
-            // minutes where the presence of Hydroelectric is expected even
-            // if its output is zero.
-            if (minute >= 7 || minute < 4) {
-                generatedByTypeMW.entrySet().removeIf(e -> Math.abs(e.getValue()) < 0.1);
-            } else {
-                generatedByTypeMW.entrySet().removeIf(e -> Math.abs(e.getValue()) < 0.1 && !"Hydroelectric".equals(e.getKey()));
+            // Remove entries with zero generation
+            for (PlantCategory category : CATEGORIES) {
+                if (mix.isReported(category) && Math.abs(mix.get(category)) < 0.1) {
+                    mix.remove(category);
+                }
             }
 
-            // Ensure that no nuclear generation is reported before nuclear
-            // plants are enabled or if their output ended up being zero after
-            // the stability corrections.
-            Double nuclearGen = generatedByTypeMW.get("Nuclear");
-            if (!useNuclear || nuclearGen == null || nuclearGen < 0.1) {
-                generatedByTypeMW.remove("Nuclear");
-            }
-            results.add(new MinuteSimulationResult(currentTime, totalGenerated, expectedDemand, averageStability, generatedByTypeMW));
-            currentTime = currentTime.plusMinutes(1);
+            if (!sink.accept(minute, totalGenerated, expectedDemand, averageStability, mix)) return false;
         }
+        return true;
     }
 
-    private double getTotalGenerated(double expectedDemand, boolean useCoal, Map<String, Double> generatedByTypeMW, double totalGenerated, List<NuclearPlant> thermals) {
-        for (NuclearPlant p : thermals) {
-            if (!useCoal && normalizeType(p.type).equals("Coal")) continue;
+    private double dispatchNuclear(SimulationState state, double expectedDemand,
+                                   GenerationMix mix, double totalGenerated) {
+        for (double capacity : state.capacities(PlantCategory.NUCLEAR)) {
             double remaining = expectedDemand - totalGenerated;
             if (remaining <= 0) break;
-            double generated = Math.min(p.calculateElectricityGenerated(remaining), remaining);
+            double generated = Math.min(capacity, remaining);
             if (generated > 0) {
-                generatedByTypeMW.merge(normalizeType(p.type), generated, Double::sum);
+                mix.add(PlantCategory.NUCLEAR, generated);
                 totalGenerated += generated;
             }
         }
         return totalGenerated;
     }
 
-    private double getTotalGenerated(int minute, Map<String, Double> generatedByTypeMW, double totalGenerated) {
-        if (minute >= 1000 && minute < 1500) {
-            double windGen = generatedByTypeMW.getOrDefault("Wind", 0.0);
-            if (windGen > 1232.5) {
-                double diff = windGen - 1232.5;
-                generatedByTypeMW.put("Wind", 1232.5);
-                totalGenerated -= diff;
+    private double dispatchThermal(SimulationState state, double expectedDemand,
+                                   GenerationMix mix, double totalGenerated) {
+        double[] capacities = state.thermalCapacities();
+        PlantCategory[] categories = state.thermalCategories();
+        for (int i = 0; i < capacities.length; i++) {
+            double remaining = expectedDemand - totalGenerated;
+            if (remaining <= 0) break;
+            double generated = Math.min(capacities[i], remaining);
+            if (generated > 0) {
+                mix.add(categories[i], generated);
+                totalGenerated += generated;
             }
         }
         return totalGenerated;
     }
 
+    /**
+     * Number of 12.5 MW steps removed from the category before the average
+     * stability reaches the minimum, or all of them if it never does. This is
+     * the same outcome as removing one step at a time and recomputing the
+     * average after each one.
+     * <p>
+     * The closed form given by the tracker gives a first guess, which is
+     * refined by adding or removing one step at a time on the sums of the
+     * tracker, in O(1) per step. The sums can differ from a recompute in the
+     * last bits, so the result is then checked against the exact average of
+     * the neighbouring step counts.
+     */
+    private int curtailmentSteps(SimulationPlan plan, GenerationMix mix, StabilityTracker tracker,
+                                 PlantCategory type, double amount) {
+        int maxSteps = maxCurtailmentSteps(amount);
+        double stability = plan.stability(type);
+        double needed = tracker.curtailmentNeeded(stability, MIN_STABILITY);
+
+        // Without a finite answer removing this category cannot raise the
+        // average, so everything goes
+        int steps = Double.isNaN(needed) || Double.isInfinite(needed) ? maxSteps
+                : (int) Math.max(1, Math.min(maxSteps, Math.ceil(needed / CURTAILMENT_STEP_MW)));
+        tracker.remove(stability, amount - outputLeft(amount, steps));
+        while (steps > 1) {
+            double step = outputLeft(amount, steps - 1) - outputLeft(amount, steps);
+            tracker.add(stability, step);
+            if (tracker.average() < MIN_STABILITY) {
+                tracker.remove(stability, step);
+                break;
+            }
+            steps--;
+        }
+        while (steps < maxSteps && tracker.average() < MIN_STABILITY) {
+            tracker.remove(stability, outputLeft(amount, steps) - outputLeft(amount, steps + 1));
+            steps++;
+        }
+
+        while (steps > 1 && stabilityAfter(plan, mix, tracker, type, amount, steps - 1) >= MIN_STABILITY) {
+            steps--;
+        }
+        while (steps < maxSteps && stabilityAfter(plan, mix, tracker, type, amount, steps) < MIN_STABILITY) {
+            steps++;
+        }
+        return steps;
+    }
+
+    // Number of steps needed to remove the whole amount
+    private static int maxCurtailmentSteps(double amount) {
+        int steps = Math.max(1, (int) Math.ceil(amount / CURTAILMENT_STEP_MW));
+        while (steps > 1 && amount - (steps - 1) * CURTAILMENT_STEP_MW <= 0) steps--;
+        while (amount - steps * CURTAILMENT_STEP_MW > 0) steps++;
+        return steps;
+    }
+
+    // Output of the category left after removing the given steps
+    private static double outputLeft(double amount, int steps) {
+        return steps < maxCurtailmentSteps(amount) ? amount - steps * CURTAILMENT_STEP_MW : 0.0;
+    }
+
+    // Sets the output left after removing the given steps and returns the
+    // exact resulting average stability
+    private static double stabilityAfter(SimulationPlan plan, GenerationMix mix, StabilityTracker tracker,
+                                         PlantCategory type, double amount, int steps) {
+        mix.set(type, outputLeft(amount, steps));
+        tracker.recompute(plan, mix);
+        return tracker.average();
+    }
+
     public List<MinuteSimulationResult> getResults() {
-        return results;
+        return result.asList();
+    }
+
+    public SimulationResult getResult() {
+        return result;
     }
 
 }
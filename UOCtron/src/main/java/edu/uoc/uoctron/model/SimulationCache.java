@@ -0,0 +1,122 @@
+package edu.uoc.uoctron.model;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded cache of simulation results, evicting the least recently used run
+ * when it is full. A run is identified by its catalog, demand forecast,
+ * options, scenario and start:
+ * <ul>
+ *     <li>With a {@link DemandProfile} every day has the same demand, so only
+ *     the minute of the day of the start matters and runs on different days
+ *     share an entry. The cached rows are handed out with the times of the
+ *     requested start.</li>
+ *     <li>With any other forecast the exact start minute is part of the key.</li>
+ * </ul>
+ * A total-blackout scenario is the same run as no scenario. The cache is
+ * thread safe; two threads missing the same key may both run the simulation.
+ */
+public final class SimulationCache {
+
+    private record Key(PlantCatalog catalog, DemandForecast demand, long start, SimulationOptions options,
+                       BlackoutScenario scenario) {
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<Key, SimulationResult> entries;
+    private long hits;
+    private long misses;
+
+    public SimulationCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The cache must hold at least one entry");
+        }
+        this.maxEntries = maxEntries;
+        // Access order keeps the least recently used entry first
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, SimulationResult> eldest) {
+                return size() > SimulationCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the result of the run, simulating it only if it is not cached.
+     * The scenario may be null for a total blackout.
+     */
+    public SimulationResult get(LocalDateTime startDateTime, SimulationOptions options, BlackoutScenario scenario,
+                                PlantCatalog catalog, DemandForecast demand) {
+        return get(startDateTime, options, scenario, catalog, demand, null);
+    }
+
+    /**
+     * Same as {@link #get(LocalDateTime, SimulationOptions, BlackoutScenario, PlantCatalog, DemandForecast)}
+     * but every row is also handed to the listener, as it is computed or
+     * replayed from the cache. If the listener stops the run, nothing is
+     * cached and null is returned.
+     */
+    public SimulationResult get(LocalDateTime startDateTime, SimulationOptions options, BlackoutScenario scenario,
+                                PlantCatalog catalog, DemandForecast demand, SimulationListener listener) {
+        Objects.requireNonNull(startDateTime);
+        long epochMinute = DemandForecast.epochMinute(startDateTime);
+        long start = demand instanceof DemandProfile
+                ? Math.floorMod(epochMinute, DemandProfile.MINUTES_PER_DAY)
+                : epochMinute;
+        Key key = new Key(catalog, demand, start, options, scenario == null || scenario.isTotal() ? null : scenario);
+
+        SimulationResult cached;
+        synchronized (this) {
+            cached = entries.get(key);
+            if (cached != null) hits++;
+            else misses++;
+        }
+        if (cached != null) {
+            SimulationResult result = cached.startingAt(startDateTime);
+            if (listener != null) {
+                for (int row = 0; row < result.size(); row++) {
+                    if (!listener.onMinute(result.row(row))) return null;
+                }
+            }
+            return result;
+        }
+
+        // Run outside the lock so other lookups are not held up
+        Simulation simulation = new Simulation(startDateTime, options, key.scenario());
+        if (listener == null) {
+            simulation.run(catalog, demand);
+        } else if (!simulation.run(catalog, demand, listener)) {
+            return null;
+        }
+        SimulationResult result = simulation.getResult();
+        synchronized (this) {
+            entries.put(key, result);
+        }
+        return result;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+    }
+}
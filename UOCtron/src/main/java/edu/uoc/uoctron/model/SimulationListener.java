@@ -0,0 +1,15 @@
+package edu.uoc.uoctron.model;
+
+/**
+ * Receives the minutes of a simulation as they are produced.
+ */
+@FunctionalInterface
+public interface SimulationListener {
+
+    /**
+     * Called once for every simulated minute, in order.
+     *
+     * @return false to stop the simulation
+     */
+    boolean onMinute(MinuteSimulationResult minute);
+}
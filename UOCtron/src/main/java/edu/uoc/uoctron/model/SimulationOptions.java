@@ -0,0 +1,78 @@
+package edu.uoc.uoctron.model;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Horizon and time step of a simulation run. Both are whole minutes; the
+ * run produces one result every step until the horizon is reached.
+ */
+public final class SimulationOptions {
+
+    // 36 hours at one result per minute
+    public static final SimulationOptions DEFAULT = new SimulationOptions(2160, 1);
+
+    private final int horizonMinutes;
+    private final int stepMinutes;
+
+    private SimulationOptions(int horizonMinutes, int stepMinutes) {
+        if (horizonMinutes <= 0) {
+            throw new IllegalArgumentException("Horizon must be positive");
+        }
+        if (stepMinutes <= 0 || stepMinutes > horizonMinutes) {
+            throw new IllegalArgumentException("Step must be positive and not longer than the horizon");
+        }
+        this.horizonMinutes = horizonMinutes;
+        this.stepMinutes = stepMinutes;
+    }
+
+    public static SimulationOptions of(Duration horizon, Duration step) {
+        return new SimulationOptions(toMinutes(horizon), toMinutes(step));
+    }
+
+    private static int toMinutes(Duration duration) {
+        Objects.requireNonNull(duration);
+        if (duration.toSecondsPart() != 0 || duration.toNanosPart() != 0) {
+            throw new IllegalArgumentException("Durations must be whole minutes: " + duration);
+        }
+        return Math.toIntExact(duration.toMinutes());
+    }
+
+    public Duration getHorizon() {
+        return Duration.ofMinutes(horizonMinutes);
+    }
+
+    public Duration getStep() {
+        return Duration.ofMinutes(stepMinutes);
+    }
+
+    public int getHorizonMinutes() {
+        return horizonMinutes;
+    }
+
+    public int getStepMinutes() {
+        return stepMinutes;
+    }
+
+    // Number of results produced by a run
+    public int getRows() {
+        return (horizonMinutes + stepMinutes - 1) / stepMinutes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SimulationOptions other)) return false;
+        return horizonMinutes == other.horizonMinutes && stepMinutes == other.stepMinutes;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * horizonMinutes + stepMinutes;
+    }
+
+    @Override
+    public String toString() {
+        return "SimulationOptions{horizon=" + getHorizon() + ", step=" + getStep() + "}";
+    }
+}
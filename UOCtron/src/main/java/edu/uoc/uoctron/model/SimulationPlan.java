@@ -0,0 +1,142 @@
+package edu.uoc.uoctron.model;
+
+import java.util.*;
+
+/**
+ * Dispatch plan of a {@link PlantCatalog}. Plant ids are taken from the
+ * category ranges of the catalog, which keep the order in which they were
+ * loaded, and the capacity and stability of every bucket are precomputed so the
+ * minute loop only has to walk arrays. The plan is immutable and shared by
+ * every run over the same catalog.
+ */
+class SimulationPlan {
+
+    // Order in which the renewable buckets are dispatched.
+    static final PlantCategory[] RENEWABLE_ORDER = {
+            PlantCategory.HYDROELECTRIC, PlantCategory.WIND, PlantCategory.GEOTHERMAL, PlantCategory.SOLAR
+    };
+
+    private final int[][] ids;
+    private final double[][] capacities;
+
+    // Thermal plants taking part in the dispatch (combined cycle and coal),
+    // kept in loading order because the merit order depends on it.
+    private final int[] thermalIds;
+    private final double[] thermalCapacities;
+    private final PlantCategory[] thermalCategories;
+
+    // Stability of every category (NaN when the plan has no plant of it) and
+    // the renewable categories sorted by increasing stability, which is the
+    // order in which they are curtailed to stabilise the grid.
+    private final double[] stabilities;
+    private final PlantCategory[] curtailmentOrder;
+
+    // Categories the minute loop dispatches, the only ones a run can report
+    private final Set<PlantCategory> dispatched;
+
+    private final RecoverySchedule schedule;
+
+    SimulationPlan(PlantCatalog catalog) {
+        List<NuclearPlant> plants = catalog.asList();
+        PlantCategory[] categories = PlantCategory.values();
+        stabilities = new double[categories.length];
+        Arrays.fill(stabilities, Double.NaN);
+        Set<PlantCategory> renewables = EnumSet.noneOf(PlantCategory.class);
+        List<Integer> thermals = new ArrayList<>();
+
+        ids = new int[categories.length][];
+        capacities = new double[categories.length][];
+        for (PlantCategory category : categories) {
+            int c = category.ordinal();
+            ids[c] = catalog.ids(category);
+            capacities[c] = new double[ids[c].length];
+            for (int i = 0; i < ids[c].length; i++) {
+                NuclearPlant p = plants.get(ids[c][i]);
+                capacities[c][i] = maxOutput(p);
+                // The stability of a category is the one of its first plant
+                if (i == 0) {
+                    stabilities[c] = p.getStability();
+                }
+                if (p instanceof RenewablePlant) {
+                    renewables.add(category);
+                }
+            }
+        }
+
+        for (int id = 0; id < plants.size(); id++) {
+            NuclearPlant p = plants.get(id);
+            if (p instanceof ThermalPlant
+                    && (p.getCategory() == PlantCategory.COMBINED_CYCLE || p.getCategory() == PlantCategory.COAL)) {
+                thermals.add(id);
+            }
+        }
+
+        thermalIds = new int[thermals.size()];
+        thermalCapacities = new double[thermals.size()];
+        thermalCategories = new PlantCategory[thermals.size()];
+        for (int i = 0; i < thermals.size(); i++) {
+            thermalIds[i] = thermals.get(i);
+            thermalCapacities[i] = maxOutput(plants.get(thermalIds[i]));
+            thermalCategories[i] = plants.get(thermalIds[i]).getCategory();
+        }
+
+        Set<PlantCategory> dispatchedCategories = EnumSet.noneOf(PlantCategory.class);
+        for (PlantCategory category : RENEWABLE_ORDER) {
+            if (ids[category.ordinal()].length > 0) dispatchedCategories.add(category);
+        }
+        if (ids[PlantCategory.NUCLEAR.ordinal()].length > 0) dispatchedCategories.add(PlantCategory.NUCLEAR);
+        dispatchedCategories.addAll(Arrays.asList(thermalCategories));
+        dispatched = Collections.unmodifiableSet(dispatchedCategories);
+
+        curtailmentOrder = renewables.stream()
+                .sorted(Comparator.comparingDouble(c -> stabilities[c.ordinal()]))
+                .toArray(PlantCategory[]::new);
+
+        schedule = new RecoverySchedule(plants);
+    }
+
+    // Output of a plant when demand is unbounded, i.e. its effective capacity
+    private static double maxOutput(NuclearPlant plant) {
+        return plant.calculateElectricityGenerated(Double.POSITIVE_INFINITY);
+    }
+
+    int[] ids(PlantCategory category) {
+        return ids[category.ordinal()];
+    }
+
+    double[] capacities(PlantCategory category) {
+        return capacities[category.ordinal()];
+    }
+
+    int[] thermalIds() {
+        return thermalIds;
+    }
+
+    double[] thermalCapacities() {
+        return thermalCapacities;
+    }
+
+    PlantCategory[] thermalCategories() {
+        return thermalCategories;
+    }
+
+    /**
+     * Stability of the first plant of the category, or NaN if the plan has no
+     * plant of that category.
+     */
+    double stability(PlantCategory category) {
+        return stabilities[category.ordinal()];
+    }
+
+    PlantCategory[] curtailmentOrder() {
+        return curtailmentOrder;
+    }
+
+    Set<PlantCategory> dispatched() {
+        return dispatched;
+    }
+
+    RecoverySchedule schedule() {
+        return schedule;
+    }
+}
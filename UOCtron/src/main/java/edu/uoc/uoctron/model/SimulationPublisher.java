@@ -0,0 +1,131 @@
+package edu.uoc.uoctron.model;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes the minutes of one simulation run to a single subscriber. The run
+ * executes on the given executor and waits whenever the subscriber has no
+ * outstanding demand, so minutes are never produced faster than they are
+ * consumed. Cancelling the subscription stops the run.
+ */
+final class SimulationPublisher implements Flow.Publisher<MinuteSimulationResult> {
+
+    private final Simulation simulation;
+    private final PlantCatalog catalog;
+    private final DemandForecast demand;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    SimulationPublisher(Simulation simulation, PlantCatalog catalog, DemandForecast demand, Executor executor) {
+        this.simulation = simulation;
+        this.catalog = catalog;
+        this.demand = demand;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super MinuteSimulationResult> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A simulation can only be published to one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new MinuteSubscription(subscriber));
+    }
+
+    private final class MinuteSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super MinuteSimulationResult> subscriber;
+        private long requested;
+        private boolean started;
+        private boolean cancelled;
+        private Throwable failure;
+
+        MinuteSubscription(Flow.Subscriber<? super MinuteSimulationResult> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            boolean start;
+            synchronized (this) {
+                if (cancelled) return;
+                if (n <= 0) {
+                    failure = new IllegalArgumentException("Requested " + n + " minutes, must be positive");
+                } else {
+                    requested += n;
+                    // Demand is unbounded once it overflows
+                    if (requested < 0) requested = Long.MAX_VALUE;
+                }
+                start = !started;
+                started = true;
+                notifyAll();
+            }
+            if (start) {
+                executor.execute(this::produce);
+            }
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        private void produce() {
+            try {
+                boolean completed = simulation.stream(catalog, demand, minute -> {
+                    if (!awaitDemand()) return false;
+                    subscriber.onNext(minute);
+                    return true;
+                });
+                Throwable error = failure();
+                if (error != null) {
+                    subscriber.onError(error);
+                } else if (completed && !isCancelled()) {
+                    subscriber.onComplete();
+                }
+            } catch (Throwable t) {
+                if (!isCancelled()) {
+                    subscriber.onError(t);
+                }
+            }
+        }
+
+        // Waits until the subscriber requests another minute. Returns false if
+        // the run has to stop instead.
+        private synchronized boolean awaitDemand() {
+            while (requested == 0 && !cancelled && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancelled = true;
+                }
+            }
+            if (cancelled || failure != null) return false;
+            if (requested != Long.MAX_VALUE) requested--;
+            return true;
+        }
+
+        private synchronized Throwable failure() {
+            return failure;
+        }
+
+        private synchronized boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package edu.uoc.uoctron.model;
+
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Results of a simulation run stored column by column. Every row is a
+ * simulated minute and every column is a contiguous primitive array, so a run
+ * costs a handful of arrays instead of one object graph per minute.
+ * Row objects are only created when they are requested.
+ */
+public class SimulationResult {
+
+    private static final PlantCategory[] CATEGORIES = PlantCategory.values();
+
+    private final LocalDateTime startDateTime;
+    private final long startEpochMinute;
+    private final long[] epochMinutes;
+    private final double[] generatedMW;
+    private final double[] expectedDemandMW;
+    private final double[] averageStability;
+    private final double[][] generatedByCategoryMW;
+    private final int[] reportedCategories;
+    private int size;
+
+    SimulationResult(LocalDateTime startDateTime, int capacity) {
+        this.startDateTime = startDateTime;
+        this.startEpochMinute = DemandForecast.epochMinute(startDateTime);
+        this.epochMinutes = new long[capacity];
+        this.generatedMW = new double[capacity];
+        this.expectedDemandMW = new double[capacity];
+        this.averageStability = new double[capacity];
+        this.generatedByCategoryMW = new double[CATEGORIES.length][capacity];
+        this.reportedCategories = new int[capacity];
+    }
+
+    // Same rows as the source starting at another time. Only the time column
+    // is copied; the source must not be appended to any more.
+    private SimulationResult(SimulationResult source, LocalDateTime startDateTime) {
+        this.startDateTime = startDateTime;
+        this.startEpochMinute = DemandForecast.epochMinute(startDateTime);
+        this.epochMinutes = new long[source.size];
+        for (int row = 0; row < source.size; row++) {
+            epochMinutes[row] = startEpochMinute + (source.epochMinutes[row] - source.startEpochMinute);
+        }
+        this.generatedMW = source.generatedMW;
+        this.expectedDemandMW = source.expectedDemandMW;
+        this.averageStability = source.averageStability;
+        this.generatedByCategoryMW = source.generatedByCategoryMW;
+        this.reportedCategories = source.reportedCategories;
+        this.size = source.size;
+    }
+
+    // Result of the same run started at another time
+    SimulationResult startingAt(LocalDateTime startDateTime) {
+        return startDateTime.equals(this.startDateTime) ? this : new SimulationResult(this, startDateTime);
+    }
+
+    void append(int minute, double generated, double expectedDemand, double stability, GenerationMix mix) {
+        epochMinutes[size] = startEpochMinute + minute;
+        generatedMW[size] = generated;
+        expectedDemandMW[size] = expectedDemand;
+        averageStability[size] = stability;
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            generatedByCategoryMW[c][size] = mix.get(CATEGORIES[c]);
+        }
+        reportedCategories[size] = mix.reportedMask();
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public LocalDateTime getStartDateTime() {
+        return startDateTime;
+    }
+
+    // Single values
+
+    public long getEpochMinute(int row) { return epochMinutes[checkRow(row)]; }
+    public LocalDateTime getTime(int row) { return startDateTime.plusMinutes(getEpochMinute(row) - startEpochMinute); }
+    public double getGeneratedMW(int row) { return generatedMW[checkRow(row)]; }
+    public double getExpectedDemandMW(int row) { return expectedDemandMW[checkRow(row)]; }
+    public double getAverageStability(int row) { return averageStability[checkRow(row)]; }
+    public double getGeneratedMW(PlantCategory category, int row) { return generatedByCategoryMW[category.ordinal()][checkRow(row)]; }
+
+    public boolean isReported(PlantCategory category, int row) {
+        return (reportedCategories[checkRow(row)] & (1 << category.ordinal())) != 0;
+    }
+
+    // Whole columns. The arrays returned are copies trimmed to the number of rows.
+
+    public long[] getEpochMinutes() { return Arrays.copyOf(epochMinutes, size); }
+    public double[] getGeneratedMW() { return Arrays.copyOf(generatedMW, size); }
+    public double[] getExpectedDemandMW() { return Arrays.copyOf(expectedDemandMW, size); }
+    public double[] getAverageStability() { return Arrays.copyOf(averageStability, size); }
+    public double[] getGeneratedMW(PlantCategory category) { return Arrays.copyOf(generatedByCategoryMW[category.ordinal()], size); }
+
+    /**
+     * Builds a row object for the given minute. The row does not share state
+     * with this result.
+     */
+    public MinuteSimulationResult row(int row) {
+        checkRow(row);
+        double[] mix = new double[CATEGORIES.length];
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            mix[c] = generatedByCategoryMW[c][row];
+        }
+        return new MinuteSimulationResult(getTime(row), generatedMW[row], expectedDemandMW[row],
+                averageStability[row], new GenerationMix(mix, reportedCategories[row]));
+    }
+
+    /**
+     * Read-only list view whose elements are built on access with {@link #row(int)}.
+     */
+    public List<MinuteSimulationResult> asList() {
+        return new AbstractList<>() {
+            @Override
+            public MinuteSimulationResult get(int index) {
+                return row(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for " + size + " rows");
+        }
+        return row;
+    }
+}
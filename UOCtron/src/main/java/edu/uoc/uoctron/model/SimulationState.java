@@ -0,0 +1,123 @@
+package edu.uoc.uoctron.model;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Operating state of the plants during a single simulation run, stored in
+ * arrays indexed by plant id. Plants themselves are never modified, so any
+ * number of runs can share the same {@link PlantCatalog}.
+ * <p>
+ * The state also tracks which plants are online. The events of the
+ * {@link RecoverySchedule} are replayed as the run advances and the dispatch
+ * arrays (the buckets of the plan restricted to online plants) are only
+ * rebuilt when one of them fires; every other minute reuses them as they are.
+ */
+final class SimulationState {
+
+    private static final PlantCategory[] CATEGORIES = PlantCategory.values();
+
+    private final SimulationPlan plan;
+    private final double[] efficiency;
+    // Efficiency of every plant in this run relative to its nominal one, or
+    // null if all of them run at nominal efficiency
+    private final double[] efficiencyScale;
+    private final boolean[] online;
+    private final PriorityQueue<RecoverySchedule.Event> pending;
+
+    private final int[][] ids = new int[CATEGORIES.length][];
+    private final double[][] capacities = new double[CATEGORIES.length][];
+    private double[] thermalCapacities;
+    private PlantCategory[] thermalCategories;
+
+    SimulationState(PlantCatalog catalog, RecoverySchedule schedule, double[] efficiencyScale) {
+        plan = catalog.plan();
+        this.efficiencyScale = efficiencyScale;
+        efficiency = efficiencyScale != null
+                ? Arrays.copyOf(efficiencyScale, catalog.size())
+                : new double[catalog.size()];
+        if (efficiencyScale == null) Arrays.fill(efficiency, 1.0);
+        online = new boolean[catalog.size()];
+        pending = schedule.newQueue();
+        rebuild();
+    }
+
+    double efficiency(int id) {
+        return efficiency[id];
+    }
+
+    // Sets the nominal efficiency of the plants, scaled for this run
+    void setEfficiency(int[] ids, double value) {
+        for (int id : ids) {
+            efficiency[id] = efficiencyScale != null ? value * efficiencyScale[id] : value;
+        }
+    }
+
+    /**
+     * Applies every event up to the given minute.
+     *
+     * @return true if the set of online plants changed
+     */
+    boolean advanceTo(int minute) {
+        boolean changed = false;
+        while (!pending.isEmpty() && pending.peek().minute() <= minute) {
+            RecoverySchedule.Event event = pending.poll();
+            if (online[event.plantId()] != event.online()) {
+                online[event.plantId()] = event.online();
+                changed = true;
+            }
+        }
+        if (changed) rebuild();
+        return changed;
+    }
+
+    // Online plants of the category, in dispatch order
+    int[] ids(PlantCategory category) {
+        return ids[category.ordinal()];
+    }
+
+    double[] capacities(PlantCategory category) {
+        return capacities[category.ordinal()];
+    }
+
+    double[] thermalCapacities() {
+        return thermalCapacities;
+    }
+
+    PlantCategory[] thermalCategories() {
+        return thermalCategories;
+    }
+
+    private void rebuild() {
+        for (PlantCategory category : CATEGORIES) {
+            int[] all = plan.ids(category);
+            double[] allCapacities = plan.capacities(category);
+            int n = countOnline(all);
+            ids[category.ordinal()] = new int[n];
+            capacities[category.ordinal()] = new double[n];
+            for (int i = 0, j = 0; i < all.length; i++) {
+                if (!online[all[i]]) continue;
+                ids[category.ordinal()][j] = all[i];
+                capacities[category.ordinal()][j++] = allCapacities[i];
+            }
+        }
+
+        int[] all = plan.thermalIds();
+        int n = countOnline(all);
+        thermalCapacities = new double[n];
+        thermalCategories = new PlantCategory[n];
+        for (int i = 0, j = 0; i < all.length; i++) {
+            if (!online[all[i]]) continue;
+            thermalCapacities[j] = plan.thermalCapacities()[i];
+            thermalCategories[j++] = plan.thermalCategories()[i];
+        }
+    }
+
+    private int countOnline(int[] plantIds) {
+        int n = 0;
+        for (int id : plantIds) {
+            if (online[id]) n++;
+        }
+        return n;
+    }
+}
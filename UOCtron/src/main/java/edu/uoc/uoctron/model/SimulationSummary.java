@@ -0,0 +1,137 @@
+package edu.uoc.uoctron.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Key figures of a blackout simulation, accumulated minute by minute while it
+ * runs so the rows never have to be kept. Every row stands for one time step
+ * of the run:
+ * <ul>
+ *     <li>Energy not served is the demand left uncovered, in MWh.</li>
+ *     <li>The time to a coverage level is the first minute at which the
+ *     generation reaches that share of the demand, or -1 if it never does.</li>
+ *     <li>Stability is the average stability of every row, and the minutes
+ *     below the minimum count the rows under {@value #MIN_STABILITY}.</li>
+ * </ul>
+ */
+public final class SimulationSummary {
+
+    public static final double MIN_STABILITY = Simulation.MIN_STABILITY;
+
+    // Shortfalls smaller than this are rounding, not unserved demand
+    private static final double TOLERANCE_MW = 0.001;
+
+    private final LocalDateTime startDateTime;
+    private final int minutes;
+    private final double demandMWh;
+    private final double energyNotServedMWh;
+    private final double peakUnservedMW;
+    private final int minutesToHalfCoverage;
+    private final int minutesTo90PercentCoverage;
+    private final int minutesToFullCoverage;
+    private final double minimumStability;
+    private final int minutesBelowMinStability;
+
+    private SimulationSummary(LocalDateTime startDateTime, Accumulator accumulator) {
+        this.startDateTime = startDateTime;
+        this.minutes = accumulator.minutes;
+        this.demandMWh = accumulator.demandMWh;
+        this.energyNotServedMWh = accumulator.energyNotServedMWh;
+        this.peakUnservedMW = accumulator.peakUnservedMW;
+        this.minutesToHalfCoverage = accumulator.toHalf;
+        this.minutesTo90PercentCoverage = accumulator.to90Percent;
+        this.minutesToFullCoverage = accumulator.toFull;
+        this.minimumStability = accumulator.rows > 0 ? accumulator.minimumStability : Double.NaN;
+        this.minutesBelowMinStability = accumulator.minutesBelowMinStability;
+    }
+
+    /**
+     * Summary of a run whose rows were kept.
+     */
+    public static SimulationSummary of(SimulationResult result) {
+        long startEpochMinute = DemandForecast.epochMinute(result.getStartDateTime());
+        // Rows are evenly spaced, so the step is the gap between the first two
+        int step = result.size() > 1 ? (int) (result.getEpochMinute(1) - result.getEpochMinute(0)) : 1;
+        Accumulator accumulator = new Accumulator(step);
+        for (int row = 0; row < result.size(); row++) {
+            accumulator.add((int) (result.getEpochMinute(row) - startEpochMinute),
+                    result.getGeneratedMW(row), result.getExpectedDemandMW(row), result.getAverageStability(row));
+        }
+        return accumulator.summary(result.getStartDateTime());
+    }
+
+    public LocalDateTime getStartDateTime() { return startDateTime; }
+    public int getMinutes() { return minutes; }
+    public double getDemandMWh() { return demandMWh; }
+    public double getEnergyNotServedMWh() { return energyNotServedMWh; }
+    public double getPeakUnservedMW() { return peakUnservedMW; }
+    public int getMinutesToHalfCoverage() { return minutesToHalfCoverage; }
+    public int getMinutesTo90PercentCoverage() { return minutesTo90PercentCoverage; }
+    public int getMinutesToFullCoverage() { return minutesToFullCoverage; }
+    public double getMinimumStability() { return minimumStability; }
+    public int getMinutesBelowMinStability() { return minutesBelowMinStability; }
+
+    // Share of the demand that was served, between 0 and 1
+    public double getServedRatio() {
+        return demandMWh > 0 ? 1 - energyNotServedMWh / demandMWh : 1.0;
+    }
+
+    @Override
+    public String toString() {
+        return "SimulationSummary{start=" + startDateTime
+                + ", minutes=" + minutes
+                + ", energyNotServedMWh=" + energyNotServedMWh
+                + ", minutesToFullCoverage=" + minutesToFullCoverage
+                + ", minimumStability=" + minimumStability
+                + ", minutesBelowMinStability=" + minutesBelowMinStability + "}";
+    }
+
+    // Folds the minutes of a run into the figures of its summary
+    static final class Accumulator implements Simulation.MinuteSink {
+        private final int stepMinutes;
+        private final double stepHours;
+        private int rows;
+        private int minutes;
+        private double demandMWh;
+        private double energyNotServedMWh;
+        private double peakUnservedMW;
+        private int toHalf = -1;
+        private int to90Percent = -1;
+        private int toFull = -1;
+        private double minimumStability = Double.POSITIVE_INFINITY;
+        private int minutesBelowMinStability;
+
+        Accumulator(int stepMinutes) {
+            this.stepMinutes = stepMinutes;
+            this.stepHours = stepMinutes / 60.0;
+        }
+
+        @Override
+        public boolean accept(int minute, double generatedMW, double expectedDemandMW, double averageStability,
+                              GenerationMix mix) {
+            add(minute, generatedMW, expectedDemandMW, averageStability);
+            return true;
+        }
+
+        void add(int minute, double generatedMW, double expectedDemandMW, double averageStability) {
+            rows++;
+            minutes += stepMinutes;
+            demandMWh += expectedDemandMW * stepHours;
+            double unserved = expectedDemandMW - generatedMW;
+            if (unserved > TOLERANCE_MW) {
+                energyNotServedMWh += unserved * stepHours;
+                peakUnservedMW = Math.max(peakUnservedMW, unserved);
+            }
+            if (toHalf < 0 && generatedMW >= 0.5 * expectedDemandMW - TOLERANCE_MW) toHalf = minute;
+            if (to90Percent < 0 && generatedMW >= 0.9 * expectedDemandMW - TOLERANCE_MW) to90Percent = minute;
+            if (toFull < 0 && unserved <= TOLERANCE_MW) toFull = minute;
+
+            minimumStability = Math.min(minimumStability, averageStability);
+            if (averageStability < MIN_STABILITY) minutesBelowMinStability += stepMinutes;
+        }
+
+        SimulationSummary summary(LocalDateTime startDateTime) {
+            return new SimulationSummary(startDateTime, this);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package edu.uoc.uoctron.model;
+
+import java.util.Arrays;
+
+/**
+ * Static k-d tree over the coordinates of the plants of a {@link PlantCatalog}.
+ * The tree is implicit: plant ids, latitudes and longitudes are kept in three
+ * arrays reordered so that the median of every range splits it, alternating
+ * latitude and longitude. Small ranges are scanned directly.
+ * <p>
+ * Coordinates are in degrees and distances are great-circle distances in km.
+ * Queries return plant ids; box and radius queries return them in increasing
+ * id order, nearest-neighbour queries by increasing distance.
+ */
+public final class SpatialIndex {
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+
+    private static final int LEAF_SIZE = 8;
+    private static final int LATITUDE = 0;
+    private static final int LONGITUDE = 1;
+
+    private final int[] ids;
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    SpatialIndex(PlantCatalog catalog) {
+        int n = catalog.size();
+        ids = new int[n];
+        latitudes = new double[n];
+        longitudes = new double[n];
+        for (int id = 0; id < n; id++) {
+            ids[id] = id;
+            latitudes[id] = catalog.get(id).getLatitude();
+            longitudes[id] = catalog.get(id).getLongitude();
+        }
+        build(0, n - 1, LATITUDE);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Plants inside the box, edges included. A box whose minimum longitude
+     * is greater than its maximum crosses the antimeridian.
+     */
+    public int[] withinBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        Hits hits = new Hits();
+        if (minLongitude <= maxLongitude) {
+            box(0, ids.length - 1, LATITUDE, minLatitude, minLongitude, maxLatitude, maxLongitude, hits);
+        } else {
+            box(0, ids.length - 1, LATITUDE, minLatitude, minLongitude, maxLatitude, 180, hits);
+            box(0, ids.length - 1, LATITUDE, minLatitude, -180, maxLatitude, maxLongitude, hits);
+        }
+        return hits.sorted();
+    }
+
+    /**
+     * Plants at most the given distance from the point.
+     */
+    public int[] withinRadius(double latitude, double longitude, double radiusKm) {
+        Hits hits = positionsWithin(latitude, longitude, radiusKm);
+        for (int i = 0; i < hits.size; i++) {
+            hits.ids[i] = ids[hits.ids[i]];
+        }
+        return hits.sorted();
+    }
+
+    /**
+     * The k plants closest to the point, closest first. Ties are broken by
+     * id. Plants whose distance cannot be computed (a coordinate out of range
+     * or not a number) come last.
+     */
+    public int[] nearest(double latitude, double longitude, int k) {
+        k = Math.min(k, ids.length);
+        if (k <= 0) return new int[0];
+
+        // Every plant within the radius is found, so once the radius holds k
+        // plants they are the k nearest. Widen it until it does, or until it
+        // covers the whole sphere: the plants still missing then are the ones
+        // no circle finds, so every plant is ranked instead.
+        double radius = 50;
+        Hits found = positionsWithin(latitude, longitude, radius);
+        while (found.size < k && radius / EARTH_RADIUS_KM < Math.PI) {
+            radius *= 2;
+            found = positionsWithin(latitude, longitude, radius);
+        }
+        if (found.size < k) {
+            found = new Hits();
+            for (int at = 0; at < ids.length; at++) {
+                found.add(at);
+            }
+        }
+
+        double[] distances = new double[found.size];
+        Integer[] order = new Integer[found.size];
+        for (int i = 0; i < found.size; i++) {
+            int at = found.ids[i];
+            order[i] = i;
+            distances[i] = distanceKm(latitude, longitude, latitudes[at], longitudes[at]);
+        }
+        int[] positions = found.ids;
+        Arrays.sort(order, (a, b) -> {
+            int byDistance = Double.compare(distances[a], distances[b]);
+            return byDistance != 0 ? byDistance : Integer.compare(ids[positions[a]], ids[positions[b]]);
+        });
+        int[] result = new int[k];
+        for (int i = 0; i < k; i++) {
+            result[i] = ids[positions[order[i]]];
+        }
+        return result;
+    }
+
+    /**
+     * Great-circle distance between two points, using the haversine formula.
+     */
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLat = Math.toRadians(latitude2 - latitude1);
+        double dLon = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    // Tree positions of the plants within the radius
+    private Hits positionsWithin(double latitude, double longitude, double radiusKm) {
+        Hits candidates = new Hits();
+        candidatesWithin(latitude, longitude, radiusKm, candidates);
+        Hits hits = new Hits();
+        for (int i = 0; i < candidates.size; i++) {
+            int at = candidates.ids[i];
+            if (distanceKm(latitude, longitude, latitudes[at], longitudes[at]) <= radiusKm) {
+                hits.add(at);
+            }
+        }
+        return hits;
+    }
+
+    // Tree positions of the plants in the bounding box of the circle, which
+    // contains every plant within the radius
+    private void candidatesWithin(double latitude, double longitude, double radiusKm, Hits out) {
+        double angle = radiusKm / EARTH_RADIUS_KM;
+        double dLat = Math.toDegrees(angle);
+        double minLat = latitude - dLat;
+        double maxLat = latitude + dLat;
+        if (angle >= Math.PI || minLat <= -90 || maxLat >= 90) {
+            // The circle reaches a pole, so it covers every longitude
+            positions(0, ids.length - 1, LATITUDE, Math.max(minLat, -90), -180, Math.min(maxLat, 90), 180, out);
+            return;
+        }
+        double dLon = Math.toDegrees(Math.asin(Math.sin(angle) / Math.cos(Math.toRadians(latitude))));
+        double minLon = longitude - dLon;
+        double maxLon = longitude + dLon;
+        if (minLon < -180) {
+            positions(0, ids.length - 1, LATITUDE, minLat, minLon + 360, maxLat, 180, out);
+            minLon = -180;
+        }
+        if (maxLon > 180) {
+            positions(0, ids.length - 1, LATITUDE, minLat, -180, maxLat, maxLon - 360, out);
+            maxLon = 180;
+        }
+        positions(0, ids.length - 1, LATITUDE, minLat, minLon, maxLat, maxLon, out);
+    }
+
+    private void box(int lo, int hi, int axis, double minLat, double minLon, double maxLat, double maxLon,
+                     Hits out) {
+        int start = out.size;
+        positions(lo, hi, axis, minLat, minLon, maxLat, maxLon, out);
+        for (int i = start; i < out.size; i++) {
+            out.ids[i] = ids[out.ids[i]];
+        }
+    }
+
+    // Collects the tree positions (not the ids) inside the box
+    private void positions(int lo, int hi, int axis, double minLat, double minLon, double maxLat, double maxLon,
+                           Hits out) {
+        if (hi - lo <= LEAF_SIZE) {
+            for (int i = lo; i <= hi; i++) {
+                if (inside(i, minLat, minLon, maxLat, maxLon)) out.add(i);
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (inside(mid, minLat, minLon, maxLat, maxLon)) out.add(mid);
+
+        double split = axis == LATITUDE ? latitudes[mid] : longitudes[mid];
+        double min = axis == LATITUDE ? minLat : minLon;
+        double max = axis == LATITUDE ? maxLat : maxLon;
+        if (min <= split) positions(lo, mid - 1, 1 - axis, minLat, minLon, maxLat, maxLon, out);
+        if (max >= split) positions(mid + 1, hi, 1 - axis, minLat, minLon, maxLat, maxLon, out);
+    }
+
+    private boolean inside(int at, double minLat, double minLon, double maxLat, double maxLon) {
+        return latitudes[at] >= minLat && latitudes[at] <= maxLat
+                && longitudes[at] >= minLon && longitudes[at] <= maxLon;
+    }
+
+    private void build(int lo, int hi, int axis) {
+        if (hi - lo <= LEAF_SIZE) return;
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi, mid, axis == LATITUDE ? latitudes : longitudes);
+        build(lo, mid - 1, 1 - axis);
+        build(mid + 1, hi, 1 - axis);
+    }
+
+    // Reorders the range so that the k-th position holds its median and
+    // nothing before (after) it is greater (smaller)
+    private void select(int lo, int hi, int k, double[] keys) {
+        while (hi > lo) {
+            double pivot = keys[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) swap(i++, j--);
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+        double latitude = latitudes[i];
+        latitudes[i] = latitudes[j];
+        latitudes[j] = latitude;
+        double longitude = longitudes[i];
+        longitudes[i] = longitudes[j];
+        longitudes[j] = longitude;
+    }
+
+    // Growable list of ints collected by a query
+    private static final class Hits {
+        int[] ids = new int[16];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        int[] sorted() {
+            int[] result = Arrays.copyOf(ids, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package edu.uoc.uoctron.model;
+
+/**
+ * Weighted stability of a generation mix, kept as the weighted sum and the
+ * total weight over the categories of the mix. The sums can be rebuilt from
+ * the mix or updated in O(1) as generation is added or removed. Besides the
+ * average, it solves in closed form how much generation of a given stability
+ * has to be removed to reach a target average, so curtailment does not need
+ * to search step by step.
+ */
+class StabilityTracker {
+
+    private static final PlantCategory[] CATEGORIES = PlantCategory.values();
+
+    private double weightedSum;
+    private double weight;
+
+    /**
+     * Recomputes the sums from scratch. Categories are added in enum order,
+     * so two mixes with the same values always give the same average.
+     */
+    void recompute(SimulationPlan plan, GenerationMix mix) {
+        weightedSum = 0.0;
+        weight = 0.0;
+        for (PlantCategory category : CATEGORIES) {
+            double stability = plan.stability(category);
+            if (mix.isReported(category) && !Double.isNaN(stability)) {
+                weightedSum += stability * mix.get(category);
+                weight += mix.get(category);
+            }
+        }
+    }
+
+    /**
+     * Adds generation with the given stability to the sums. Generation
+     * without a stability (NaN) does not count, as in {@link #recompute}.
+     */
+    void add(double stability, double mw) {
+        if (Double.isNaN(stability)) return;
+        weightedSum += stability * mw;
+        weight += mw;
+    }
+
+    void remove(double stability, double mw) {
+        add(stability, -mw);
+    }
+
+    double average() {
+        return (weight > 0) ? weightedSum / weight : 0.0;
+    }
+
+    double weight() {
+        return weight;
+    }
+
+    /**
+     * MW of generation with the given stability that must be removed for the
+     * average to reach the target. It is infinite when removing that
+     * generation cannot raise the average.
+     */
+    double curtailmentNeeded(double stability, double target) {
+        if (average() >= target) return 0.0;
+        if (stability >= target) return Double.POSITIVE_INFINITY;
+        // (S - s·x) / (W - x) >= t  <=>  x >= (t·W - S) / (t - s)
+        return (target * weight - weightedSum) / (target - stability);
+    }
+}
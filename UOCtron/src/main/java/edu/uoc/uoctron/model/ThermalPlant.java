@@ -3,7 +3,7 @@ package edu.uoc.uoctron.model;
 import java.time.Duration;
 
 public class ThermalPlant extends NuclearPlant {
-    private FuelType fuelType;
+    private final FuelType fuelType;
 
     public ThermalPlant(String name, String type, String city, double latitude, double longitude,
                         double maxCapacityMW, Duration availability, Duration restartTime,
@@ -0,0 +1,126 @@
+package edu.uoc.uoctron.model;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Per-category distributions used by {@link MonteCarloSimulation} to draw the
+ * recovery of every plant:
+ * <ul>
+ *     <li>The restart time and the availability are scaled by a log-normal
+ *     factor {@code exp(sigma * N(0, 1))}, so the nominal value is the median
+ *     and a spread of 0 keeps it fixed.</li>
+ *     <li>The efficiency of renewable plants is scaled by a factor drawn
+ *     uniformly from a range, e.g. how windy or cloudy the day is.</li>
+ * </ul>
+ * Every plant draws its own values. Instances are immutable; the
+ * {@code with} methods return modified copies.
+ */
+public final class UncertaintyModel {
+
+    private static final PlantCategory[] CATEGORIES = PlantCategory.values();
+
+    /**
+     * Restart times within about ±40% (P5–P95), availabilities within ±15%,
+     * wind between 30% and 100% and solar between 60% and 100% of their
+     * nominal output.
+     */
+    public static final UncertaintyModel DEFAULT = new UncertaintyModel()
+            .withRestartSpread(0.25)
+            .withAvailabilitySpread(0.1)
+            .withEfficiencyRange(PlantCategory.WIND, 0.3, 1.0)
+            .withEfficiencyRange(PlantCategory.SOLAR, 0.6, 1.0);
+
+    /**
+     * No uncertainty at all: every sample is the deterministic simulation.
+     */
+    public static final UncertaintyModel NONE = new UncertaintyModel();
+
+    private final double[] restartSpread;
+    private final double[] availabilitySpread;
+    private final double[] minEfficiency;
+    private final double[] maxEfficiency;
+
+    private UncertaintyModel() {
+        restartSpread = new double[CATEGORIES.length];
+        availabilitySpread = new double[CATEGORIES.length];
+        minEfficiency = new double[CATEGORIES.length];
+        maxEfficiency = new double[CATEGORIES.length];
+        Arrays.fill(minEfficiency, 1.0);
+        Arrays.fill(maxEfficiency, 1.0);
+    }
+
+    private UncertaintyModel(UncertaintyModel other) {
+        restartSpread = other.restartSpread.clone();
+        availabilitySpread = other.availabilitySpread.clone();
+        minEfficiency = other.minEfficiency.clone();
+        maxEfficiency = other.maxEfficiency.clone();
+    }
+
+    public UncertaintyModel withRestartSpread(double sigma) {
+        UncertaintyModel copy = new UncertaintyModel(this);
+        Arrays.fill(copy.restartSpread, checkSpread(sigma));
+        return copy;
+    }
+
+    public UncertaintyModel withRestartSpread(PlantCategory category, double sigma) {
+        UncertaintyModel copy = new UncertaintyModel(this);
+        copy.restartSpread[category.ordinal()] = checkSpread(sigma);
+        return copy;
+    }
+
+    public UncertaintyModel withAvailabilitySpread(double sigma) {
+        UncertaintyModel copy = new UncertaintyModel(this);
+        Arrays.fill(copy.availabilitySpread, checkSpread(sigma));
+        return copy;
+    }
+
+    public UncertaintyModel withAvailabilitySpread(PlantCategory category, double sigma) {
+        UncertaintyModel copy = new UncertaintyModel(this);
+        copy.availabilitySpread[category.ordinal()] = checkSpread(sigma);
+        return copy;
+    }
+
+    public UncertaintyModel withEfficiencyRange(PlantCategory category, double min, double max) {
+        if (!(min >= 0 && min <= max && max <= 1)) {
+            throw new IllegalArgumentException("Efficiency range must satisfy 0 <= min <= max <= 1");
+        }
+        UncertaintyModel copy = new UncertaintyModel(this);
+        copy.minEfficiency[category.ordinal()] = min;
+        copy.maxEfficiency[category.ordinal()] = max;
+        return copy;
+    }
+
+    private static double checkSpread(double sigma) {
+        if (!(sigma >= 0)) {
+            throw new IllegalArgumentException("Spread must be non-negative");
+        }
+        return sigma;
+    }
+
+    // Draws the minute a plant comes online
+    int drawOnlineMinute(NuclearPlant plant, RandomGenerator random) {
+        int nominal = RecoverySchedule.onlineMinute(plant.getRestartTime()) - RecoverySchedule.DETECTION_MINUTES;
+        return scale(nominal, restartSpread[plant.getCategory().ordinal()], random)
+                + RecoverySchedule.DETECTION_MINUTES;
+    }
+
+    // Draws the minute a plant runs out, MAX_VALUE if never
+    int drawRunOutMinute(NuclearPlant plant, RandomGenerator random) {
+        int nominal = RecoverySchedule.runOutMinute(plant.getAvailability());
+        if (nominal == Integer.MAX_VALUE) return nominal;
+        return Math.max(1, scale(nominal, availabilitySpread[plant.getCategory().ordinal()], random));
+    }
+
+    double drawEfficiency(NuclearPlant plant, RandomGenerator random) {
+        double min = minEfficiency[plant.getCategory().ordinal()];
+        double max = maxEfficiency[plant.getCategory().ordinal()];
+        return min == max ? min : min + (max - min) * random.nextDouble();
+    }
+
+    private static int scale(int minutes, double sigma, RandomGenerator random) {
+        if (sigma == 0) return minutes;
+        double scaled = Math.rint(minutes * Math.exp(sigma * random.nextGaussian()));
+        return (int) Math.min(Integer.MAX_VALUE - RecoverySchedule.DETECTION_MINUTES, scaled);
+    }
+}
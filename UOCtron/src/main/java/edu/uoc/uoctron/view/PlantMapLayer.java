@@ -0,0 +1,454 @@
+package edu.uoc.uoctron.view;
+
+import edu.uoc.uoctron.controller.PlantDescriptor;
+import edu.uoc.uoctron.model.PlantCatalog;
+import edu.uoc.uoctron.model.PlantClusters;
+import edu.uoc.uoctron.model.PlantClusters.Cluster;
+import javafx.geometry.Rectangle2D;
+import javafx.geometry.VPos;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tooltip;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Draws the plants on the map of the play view. Plants closer than
+ * {@link #CLUSTER_PIXELS} on screen are merged into one marker showing their
+ * total capacity. Icons are decoded once per icon file and shared by every
+ * plant and view, and a single tooltip shows the marker under the pointer.
+ * <p>
+ * Scrolling zooms in and out by powers of two, dragging pans and a double
+ * click goes back to the whole map. Every zoom level has its own
+ * {@link PlantClusters}, built the first time it is shown. Up to
+ * {@link #CANVAS_THRESHOLD} visible markers get one node each, and panning
+ * keeps the nodes of the clusters still in view and only adds and removes
+ * the others. Above that the markers are drawn on a single {@link Canvas}
+ * instead, and the marker under the pointer is found through the spatial
+ * index of the catalog.
+ */
+final class PlantMapLayer {
+
+    static final double CLUSTER_PIXELS = 16;
+    static final int CANVAS_THRESHOLD = 500;
+    static final int MAX_ZOOM_LEVEL = 4;
+
+    private static final double ICON_SIZE = 24;
+    // Widest cluster label, as drawn on the canvas
+    private static final double MAX_LABEL_WIDTH = 4 * ICON_SIZE;
+    private static final double LABEL_PADDING = 6;
+    private static final Font LABEL_FONT = Font.font("System", FontWeight.BOLD, 11);
+    private static final Color LABEL_FILL = Color.rgb(0, 0, 120, 0.8);
+    // Plant names listed in the tooltip of a cluster
+    private static final int TOOLTIP_NAMES = 10;
+
+    // Area of the map image, in degrees and pixels
+    private static final double MIN_LONGITUDE = -10.5;
+    private static final double MAX_LONGITUDE = 4.3;
+    private static final double MIN_LATITUDE = 35.5;
+    private static final double MAX_LATITUDE = 43.1;
+    private static final double MAP_WIDTH = 630.0;
+    private static final double MAP_HEIGHT = 400.0;
+
+    // Decoded icons by file name, null if the file could not be loaded. Only
+    // used on the JavaFX thread.
+    private static final Map<String, Image> ICONS = new HashMap<>();
+
+    private final Pane mapPane;
+    private final List<PlantDescriptor> plants;
+    private final PlantCatalog catalog;
+    private final PlantClusters[] levels = new PlantClusters[MAX_ZOOM_LEVEL + 1];
+    // Width of the canvas label of every cluster of a level, by cluster id,
+    // measured the first time it is needed; NaN until then
+    private final double[][] labelWidths = new double[MAX_ZOOM_LEVEL + 1][];
+    private final Tooltip tooltip = new Tooltip();
+
+    // Markers on the pane by cluster id, for the zoom level they were built for
+    private final Map<Integer, Node> markers = new HashMap<>();
+    private int markersLevel = -1;
+
+    // Used instead of the markers when too many are visible
+    private Canvas canvas;
+    // Cluster the tooltip is shown for on the canvas, -1 if none
+    private int hovered = -1;
+
+    // Zoomed-in part of the map, hidden on the whole map where the
+    // background of the view shows through
+    private ImageView zoomedMap;
+
+    // Visible area: zoom level and top left corner, in pixels of the whole map
+    private int level;
+    private double offsetX;
+    private double offsetY;
+    private double dragX;
+    private double dragY;
+
+    PlantMapLayer(Pane mapPane, List<PlantDescriptor> plants, PlantCatalog catalog) {
+        this.mapPane = mapPane;
+        this.plants = plants;
+        this.catalog = catalog;
+    }
+
+    void render() {
+        mapPane.setOnScroll(this::zoom);
+        mapPane.setOnMousePressed(e -> {
+            dragX = e.getX();
+            dragY = e.getY();
+        });
+        mapPane.setOnMouseDragged(e -> {
+            pan(e.getX() - dragX, e.getY() - dragY);
+            dragX = e.getX();
+            dragY = e.getY();
+        });
+        mapPane.setOnMouseClicked(e -> {
+            if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) {
+                level = 0;
+                offsetX = 0;
+                offsetY = 0;
+                update();
+            }
+        });
+        update();
+    }
+
+    private void zoom(ScrollEvent e) {
+        int step = e.getDeltaY() > 0 ? 1 : e.getDeltaY() < 0 ? -1 : 0;
+        int newLevel = Math.max(0, Math.min(MAX_ZOOM_LEVEL, level + step));
+        if (newLevel == level) return;
+        // Keep the point under the pointer in place
+        double x = offsetX + e.getX() / scale(level);
+        double y = offsetY + e.getY() / scale(level);
+        level = newLevel;
+        offsetX = x - e.getX() / scale(level);
+        offsetY = y - e.getY() / scale(level);
+        update();
+        e.consume();
+    }
+
+    private void pan(double dx, double dy) {
+        if (level == 0) return;
+        offsetX -= dx / scale(level);
+        offsetY -= dy / scale(level);
+        update();
+    }
+
+    /**
+     * Shows the clusters of the visible area, as nodes or on the canvas
+     * depending on how many there are.
+     */
+    private void update() {
+        double scale = scale(level);
+        double width = MAP_WIDTH / scale;
+        double height = MAP_HEIGHT / scale;
+        offsetX = Math.max(0, Math.min(MAP_WIDTH - width, offsetX));
+        offsetY = Math.max(0, Math.min(MAP_HEIGHT - height, offsetY));
+        showZoomedMap(width, height);
+
+        if (markersLevel != level) {
+            removeMarkers();
+            markersLevel = level;
+        }
+
+        // Markers hang down and right from their position, so look a bit
+        // further up and left
+        List<Cluster> visible = clusters(level).within(yToLatitude(offsetY + height),
+                xToLongitude(offsetX - ICON_SIZE / scale), yToLatitude(offsetY - ICON_SIZE / scale),
+                xToLongitude(offsetX + width));
+        if (visible.size() > CANVAS_THRESHOLD) {
+            removeMarkers();
+            drawCanvas(visible);
+        } else {
+            if (canvas != null) mapPane.getChildren().remove(canvas);
+            updateMarkers(visible);
+        }
+    }
+
+    // Keeps the nodes of the clusters still visible and replaces the others
+    private void updateMarkers(List<Cluster> visible) {
+        Set<Integer> ids = new HashSet<>();
+        for (Cluster cluster : visible) {
+            ids.add(cluster.id());
+        }
+        markers.entrySet().removeIf(entry -> {
+            if (ids.contains(entry.getKey())) return false;
+            mapPane.getChildren().remove(entry.getValue());
+            return true;
+        });
+
+        for (Cluster cluster : visible) {
+            Node marker = markers.get(cluster.id());
+            if (marker == null) {
+                marker = createMarker(cluster);
+                if (marker == null) continue;
+                markers.put(cluster.id(), marker);
+                mapPane.getChildren().add(marker);
+            }
+            marker.setLayoutX(screenX(cluster));
+            marker.setLayoutY(screenY(cluster));
+        }
+    }
+
+    private void removeMarkers() {
+        mapPane.getChildren().removeAll(markers.values());
+        markers.clear();
+        hideTooltip();
+    }
+
+    private void drawCanvas(List<Cluster> visible) {
+        if (canvas == null) {
+            // Room for the markers hanging over the right and bottom edges
+            canvas = new Canvas(MAP_WIDTH + MAX_LABEL_WIDTH, MAP_HEIGHT + ICON_SIZE);
+            canvas.setOnMouseMoved(e -> {
+                Cluster cluster = clusterAt(e.getX(), e.getY());
+                if (cluster == null) {
+                    hideTooltip();
+                } else if (cluster.id() != hovered) {
+                    hovered = cluster.id();
+                    showTooltip(tooltipText(cluster), canvas, e);
+                }
+            });
+            canvas.setOnMouseExited(e -> hideTooltip());
+        }
+        if (!mapPane.getChildren().contains(canvas)) {
+            mapPane.getChildren().add(zoomedMap != null ? 1 : 0, canvas);
+        }
+
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        g.setFont(LABEL_FONT);
+        g.setTextAlign(TextAlignment.CENTER);
+        g.setTextBaseline(VPos.CENTER);
+        for (Cluster cluster : visible) {
+            double x = screenX(cluster);
+            double y = screenY(cluster);
+            if (cluster.size() == 1) {
+                Image image = icon(plants.get(cluster.plantIds()[0]).icon());
+                if (image != null) g.drawImage(image, x, y, ICON_SIZE, ICON_SIZE);
+            } else {
+                double width = labelWidth(cluster);
+                g.setFill(LABEL_FILL);
+                g.fillRoundRect(x, y, width, ICON_SIZE, ICON_SIZE, ICON_SIZE);
+                g.setFill(Color.WHITE);
+                g.fillText(formatCapacity(cluster.totalCapacityMW()), x + width / 2, y + ICON_SIZE / 2);
+            }
+        }
+    }
+
+    /**
+     * Cluster whose marker on the canvas is at the given point, the one drawn
+     * last if several overlap, or null if there is none.
+     */
+    private Cluster clusterAt(double x, double y) {
+        double scale = scale(level);
+        double mapX = offsetX + x / scale;
+        double mapY = offsetY + y / scale;
+        List<Cluster> candidates = clusters(level).within(yToLatitude(mapY), xToLongitude(mapX - MAX_LABEL_WIDTH / scale),
+                yToLatitude(mapY - ICON_SIZE / scale), xToLongitude(mapX));
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            Cluster cluster = candidates.get(i);
+            double width = cluster.size() == 1 ? ICON_SIZE : labelWidth(cluster);
+            if (cluster.size() == 1 && icon(plants.get(cluster.plantIds()[0]).icon()) == null) continue;
+            if (x >= screenX(cluster) && x <= screenX(cluster) + width
+                    && y >= screenY(cluster) && y <= screenY(cluster) + ICON_SIZE) {
+                return cluster;
+            }
+        }
+        return null;
+    }
+
+    private PlantClusters clusters(int level) {
+        if (levels[level] == null) {
+            double scale = scale(level);
+            levels[level] = new PlantClusters(catalog,
+                    CLUSTER_PIXELS / scale / MAP_HEIGHT * (MAX_LATITUDE - MIN_LATITUDE),
+                    CLUSTER_PIXELS / scale / MAP_WIDTH * (MAX_LONGITUDE - MIN_LONGITUDE));
+            labelWidths[level] = new double[levels[level].size()];
+            Arrays.fill(labelWidths[level], Double.NaN);
+        }
+        return levels[level];
+    }
+
+    private double screenX(Cluster cluster) {
+        return (longitudeToX(cluster.longitude()) - offsetX) * scale(level);
+    }
+
+    private double screenY(Cluster cluster) {
+        return (latitudeToY(cluster.latitude()) - offsetY) * scale(level);
+    }
+
+    /**
+     * Icon of the plant for a cluster of one, or a label with the total
+     * capacity; null if the icon of a single plant could not be loaded.
+     */
+    private Node createMarker(Cluster cluster) {
+        Node marker;
+        if (cluster.size() == 1) {
+            marker = createIcon(plants.get(cluster.plantIds()[0]));
+        } else {
+            marker = createClusterLabel(cluster);
+        }
+        if (marker != null) {
+            String text = tooltipText(cluster);
+            marker.setOnMouseEntered(e -> showTooltip(text, (Node) e.getSource(), e));
+            marker.setOnMouseExited(e -> hideTooltip());
+        }
+        return marker;
+    }
+
+    private static Node createIcon(PlantDescriptor plant) {
+        Image image = icon(plant.icon());
+        if (image == null) return null;
+        ImageView icon = new ImageView(image);
+        icon.setFitWidth(ICON_SIZE);
+        icon.setFitHeight(ICON_SIZE);
+        icon.setPickOnBounds(true);
+        return icon;
+    }
+
+    private static Node createClusterLabel(Cluster cluster) {
+        Label label = new Label(formatCapacity(cluster.totalCapacityMW()));
+        label.getStyleClass().add("map-cluster");
+        label.setMinSize(ICON_SIZE, ICON_SIZE);
+        label.setMaxSize(Region.USE_PREF_SIZE, Region.USE_PREF_SIZE);
+        return label;
+    }
+
+    // Only called with clusters of the current level
+    private double labelWidth(Cluster cluster) {
+        double[] widths = labelWidths[level];
+        if (Double.isNaN(widths[cluster.id()])) {
+            Text text = new Text(formatCapacity(cluster.totalCapacityMW()));
+            text.setFont(LABEL_FONT);
+            widths[cluster.id()] = Math.min(MAX_LABEL_WIDTH,
+                    Math.max(ICON_SIZE, text.getLayoutBounds().getWidth() + 2 * LABEL_PADDING));
+        }
+        return widths[cluster.id()];
+    }
+
+    private void showZoomedMap(double width, double height) {
+        if (level == 0) {
+            if (zoomedMap != null) zoomedMap.setVisible(false);
+            mapPane.setClip(null);
+            return;
+        }
+        if (zoomedMap == null) {
+            zoomedMap = new ImageView(new Image(PlantMapLayer.class.getResource("/images/map.jpg").toExternalForm()));
+            zoomedMap.setFitWidth(MAP_WIDTH);
+            zoomedMap.setFitHeight(MAP_HEIGHT);
+            mapPane.getChildren().add(0, zoomedMap);
+        }
+        // The background covers the parent of the pane and is centered on it
+        Image image = zoomedMap.getImage();
+        Region parent = (Region) mapPane.getParent();
+        double imageScale = Math.max(parent.getWidth() / image.getWidth(), parent.getHeight() / image.getHeight());
+        double imageX = (parent.getWidth() - image.getWidth() * imageScale) / 2;
+        double imageY = (parent.getHeight() - image.getHeight() * imageScale) / 2;
+        zoomedMap.setViewport(new Rectangle2D(
+                (mapPane.getLayoutX() + offsetX - imageX) / imageScale,
+                (mapPane.getLayoutY() + offsetY - imageY) / imageScale,
+                width / imageScale, height / imageScale));
+        zoomedMap.setVisible(true);
+        mapPane.setClip(new Rectangle(MAP_WIDTH, MAP_HEIGHT));
+    }
+
+    private void showTooltip(String text, Node owner, MouseEvent e) {
+        tooltip.setText(text);
+        tooltip.show(owner, e.getScreenX() + 10, e.getScreenY() + 10);
+    }
+
+    private void hideTooltip() {
+        hovered = -1;
+        tooltip.hide();
+    }
+
+    private String tooltipText(Cluster cluster) {
+        if (cluster.size() == 1) {
+            PlantDescriptor plant = plants.get(cluster.plantIds()[0]);
+            return "Name: " + orUnknown(plant.name()) + "\n" +
+                    "Type: " + orUnknown(plant.type()) + "\n" +
+                    "City: " + orUnknown(plant.city());
+        }
+        StringBuilder text = new StringBuilder(cluster.size() + " plants, "
+                + formatCapacity(cluster.totalCapacityMW()));
+        int listed = Math.min(cluster.size(), TOOLTIP_NAMES);
+        for (int i = 0; i < listed; i++) {
+            text.append("\n").append(orUnknown(plants.get(cluster.plantIds()[i]).name()));
+        }
+        if (listed < cluster.size()) {
+            text.append("\n… and ").append(cluster.size() - listed).append(" more");
+        }
+        return text.toString();
+    }
+
+    private static String formatCapacity(double megawatts) {
+        return megawatts >= 1000
+                ? String.format(Locale.ROOT, "%.1f GW", megawatts / 1000)
+                : String.format(Locale.ROOT, "%.0f MW", megawatts);
+    }
+
+    private static String orUnknown(String value) {
+        return value != null ? value : "Unknown";
+    }
+
+    // Decodes every icon file once
+    private static Image icon(String iconName) {
+        if (!ICONS.containsKey(iconName)) {
+            ICONS.put(iconName, loadIcon(iconName));
+        }
+        return ICONS.get(iconName);
+    }
+
+    private static Image loadIcon(String iconName) {
+        try (var is = PlantMapLayer.class.getResourceAsStream("/images/icons/" + iconName)) {
+            if (is == null) {
+                System.err.println("Icon not found: " + iconName);
+                return null;
+            }
+            return new Image(is);
+        } catch (Exception e) {
+            System.err.println("Error loading icon: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static double scale(int level) {
+        return 1 << level;
+    }
+
+    static double longitudeToX(double longitude) {
+        return ((longitude - MIN_LONGITUDE) / (MAX_LONGITUDE - MIN_LONGITUDE)) * MAP_WIDTH;
+    }
+
+    static double latitudeToY(double latitude) {
+        return ((MAX_LATITUDE - latitude) / (MAX_LATITUDE - MIN_LATITUDE)) * MAP_HEIGHT;
+    }
+
+    static double xToLongitude(double x) {
+        return MIN_LONGITUDE + x / MAP_WIDTH * (MAX_LONGITUDE - MIN_LONGITUDE);
+    }
+
+    static double yToLatitude(double y) {
+        return MAX_LATITUDE - y / MAP_HEIGHT * (MAX_LATITUDE - MIN_LATITUDE);
+    }
+}
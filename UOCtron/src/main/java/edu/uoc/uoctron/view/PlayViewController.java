@@ -2,7 +2,13 @@ package edu.uoc.uoctron.view;
 
 import edu.uoc.uoctron.UOCtron;
 import edu.uoc.uoctron.controller.UOCtronController;
+import edu.uoc.uoctron.model.Decimation;
+import edu.uoc.uoctron.model.GenerationMix;
+import edu.uoc.uoctron.model.MinuteSimulationResult;
+import edu.uoc.uoctron.model.PlantCategory;
+import edu.uoc.uoctron.model.SimulationOptions;
 import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.Node;
 import javafx.scene.Scene;
@@ -11,26 +17,28 @@ import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.StackedAreaChart;
 import javafx.scene.chart.XYChart;
 import javafx.scene.control.*;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Controller for the play view.
  */
 public class PlayViewController {
 
+    // Chart updates are batched to at most 20 per second
+    private static final long FRAME_NANOS = 50_000_000L;
+
     private UOCtronController controller;
 
     @FXML
@@ -45,6 +53,22 @@ public class PlayViewController {
 
     @FXML private Spinner<Integer> minuteSpinner;
 
+    @FXML private Button simulateButton;
+
+    @FXML private Button cancelButton;
+
+    @FXML private ProgressBar progressBar;
+
+    // Runs the simulations off the JavaFX thread, one at a time. Shared by
+    // every play view, so coming back to the scene does not add threads
+    private static final ExecutorService SIMULATION_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "blackout-simulation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Task<Boolean> simulationTask;
+
     @FXML
     public void initialize() {
         controller = new UOCtronController("plants.txt", "demand_forecast.txt");
@@ -57,86 +81,15 @@ public class PlayViewController {
     }
 
     private void loadPlants() {
-        for (Object plant : controller.getNuclearPlants()) {
-            String plantJsonString = plant.toString();
-            try {
-                JSONObject plantJson = new JSONObject(plantJsonString);
-
-                double lat = plantJson.getDouble("latitude");
-                double lon = plantJson.getDouble("longitude");
-                String iconName = plantJson.getString("icon");
-
-                ImageView icon = createIcon(iconName);
-                if (icon == null) continue;
-
-                double x = mapLongitudeToX(lon);
-                double y = mapLatitudeToY(lat);
-
-                icon.setLayoutX(x);
-                icon.setLayoutY(y);
-
-                String tooltipText = formatTooltip(plantJson);
-                Tooltip tooltip = new Tooltip(tooltipText);
-
-                icon.setOnMouseEntered(e -> {
-                    tooltip.show(icon, e.getScreenX() + 10, e.getScreenY() + 10);
-                });
-
-                icon.setOnMouseExited(e -> tooltip.hide());
-
-                icon.setMouseTransparent(false);
-                icon.setPickOnBounds(true);
-
-                mapPane.getChildren().add(icon);
-
-            } catch (Exception e) {
-                System.err.println("Error processing plant JSON: " + e.getMessage());
-            }
-        }
-    }
-
-    private ImageView createIcon(String iconName) {
-        try (var is = getClass().getResourceAsStream("/images/icons/" + iconName)) {
-            if (is == null) {
-                System.err.println("Icon not found: " + iconName);
-                return null;
-            }
-            Image image = new Image(is);
-            ImageView icon = new ImageView(image);
-            icon.setFitWidth(24);
-            icon.setFitHeight(24);
-            return icon;
-        } catch (Exception e) {
-            System.err.println("Error loading icon: " + e.getMessage());
-            return null;
-        }
-    }
-
-    private String formatTooltip(JSONObject json) {
-        return "Name: " + json.optString("name", "Unknown") + "\n" +
-                "Type: " + json.optString("type", "Unknown") + "\n" +
-                "City: " + json.optString("city", "Unknown");
-    }
-
-    private double mapLongitudeToX(double longitude) {
-        double minLon = -10.5;
-        double maxLon = 4.3;
-        double mapWidth = 630.0;
-
-        return ((longitude - minLon) / (maxLon - minLon)) * mapWidth;
-    }
-
-    private double mapLatitudeToY(double latitude) {
-        double minLat = 35.5;
-        double maxLat = 43.1;
-        double mapHeight = 400.0;
-
-        return ((maxLat - latitude) / (maxLat - minLat)) * mapHeight;
+        new PlantMapLayer(mapPane, controller.getPlantDescriptors(), controller.getCatalog())
+                .render();
     }
 
     @FXML
     private void setupBackButton() {
         backButton.setOnAction(e -> {
+            // A run of this view is of no use once it is left
+            onCancelSimulationClicked();
             try {
                 UOCtron.main.goScene("main");
             } catch (IOException ex) {
@@ -147,6 +100,8 @@ public class PlayViewController {
 
     @FXML
     private void onSimulateBlackoutClicked() {
+        if (simulationTask != null && simulationTask.isRunning()) return;
+
         LocalDate date = datePicker.getValue();
         if (date == null) {
             showAlert();
@@ -157,9 +112,55 @@ public class PlayViewController {
         int minute = minuteSpinner.getValue();
         LocalDateTime blackoutStart = LocalDateTime.of(date, LocalTime.of(hour, minute));
 
-        controller.runBlackoutSimulation(blackoutStart);
-        JSONArray results = controller.getSimulationResults();
-        showSimulationChart(results);
+        LiveChart chart = new LiveChart(controller.getGenerationTypes());
+        ChartFeed feed = new ChartFeed(chart);
+        int rows = SimulationOptions.DEFAULT.getRows();
+
+        // The simulation runs on the background thread and the chart is fed
+        // in batches on the JavaFX thread
+        Task<Boolean> task = new Task<>() {
+            private int done;
+
+            @Override
+            protected Boolean call() {
+                return controller.runBlackoutSimulationProgressively(blackoutStart, result -> {
+                    if (isCancelled()) return false;
+                    feed.offer(result);
+                    updateProgress(++done, rows);
+                    return true;
+                });
+            }
+        };
+        task.setOnSucceeded(e -> endSimulation(feed));
+        task.setOnCancelled(e -> endSimulation(feed));
+        task.setOnFailed(e -> {
+            endSimulation(feed);
+            System.err.println("Error running the simulation: " + task.getException());
+        });
+        chart.onClose(task::cancel);
+
+        simulationTask = task;
+        simulateButton.setDisable(true);
+        cancelButton.setDisable(false);
+        progressBar.progressProperty().bind(task.progressProperty());
+        chart.show();
+        SIMULATION_EXECUTOR.execute(task);
+    }
+
+    @FXML
+    private void onCancelSimulationClicked() {
+        if (simulationTask != null) {
+            simulationTask.cancel();
+        }
+    }
+
+    // Shows the minutes still pending and resets the controls
+    private void endSimulation(ChartFeed feed) {
+        feed.drain();
+        progressBar.progressProperty().unbind();
+        progressBar.setProgress(0);
+        simulateButton.setDisable(false);
+        cancelButton.setDisable(true);
     }
 
     private void showAlert() {
@@ -167,92 +168,223 @@ public class PlayViewController {
         alert.showAndWait();
     }
 
-    private void showSimulationChart(JSONArray results) {
-        if (results == null || results.isEmpty()) {
-            System.err.println("No simulation results to show.");
-            return;
+    /**
+     * Hands the minutes computed on the simulation thread to the chart. They
+     * are queued and drained on the JavaFX thread at most once a frame, so a
+     * fast run does not flood the event queue with one update per minute.
+     */
+    private static final class ChartFeed {
+        private final LiveChart chart;
+        private final List<MinuteSimulationResult> pending = new ArrayList<>();
+        private final AtomicBoolean drainQueued = new AtomicBoolean();
+        private long lastDrain;
+
+        ChartFeed(LiveChart chart) {
+            this.chart = chart;
+            this.lastDrain = System.nanoTime() - FRAME_NANOS;
         }
 
-        NumberAxis xAxis = new NumberAxis();
-        xAxis.setLabel("Minutes since blackout");
-        NumberAxis yAxis = new NumberAxis();
-        yAxis.setLabel("Megawatts (MW)");
-
-        StackedAreaChart<Number, Number> areaChart = new StackedAreaChart<>(xAxis, yAxis);
-        areaChart.setTitle("Energy Generation vs Expected Demand (36h)");
-        areaChart.setAnimated(false);
-        areaChart.setCreateSymbols(false);
-        areaChart.setLegendVisible(true);
-        areaChart.setStyle("-fx-background-color: transparent;");
-        areaChart.setPrefSize(1000, 600);
-
-        LineChart<Number, Number> lineChart = new LineChart<>(xAxis, yAxis);
-        lineChart.setLegendVisible(false);
-        lineChart.setHorizontalGridLinesVisible(false);
-        lineChart.setVerticalGridLinesVisible(false);
-        lineChart.setAlternativeRowFillVisible(false);
-        lineChart.setAlternativeColumnFillVisible(false);
-        lineChart.setCreateSymbols(false);
-        lineChart.setAnimated(false);
-        lineChart.setOpacity(1.0);
-        lineChart.setStyle("-fx-background-color: transparent;");
-        lineChart.setPrefSize(1000, 600);
-
-        Set<String> allTypesSet = new LinkedHashSet<>();
-
-        // Primero obtener todos los tipos
-        for (int i = 0; i < results.length(); i++) {
-            JSONObject obj = results.getJSONObject(i);
-            JSONObject genByType = obj.getJSONObject("generatedByTypeMW");
-            allTypesSet.addAll(genByType.keySet());
+        // Called on the simulation thread
+        void offer(MinuteSimulationResult minute) {
+            synchronized (pending) {
+                pending.add(minute);
+            }
+            long now = System.nanoTime();
+            if (now - lastDrain >= FRAME_NANOS && !drainQueued.getAndSet(true)) {
+                lastDrain = now;
+                Platform.runLater(this::drain);
+            }
         }
-        List<String> sortedTypes = new ArrayList<>(allTypesSet);
-        Collections.sort(sortedTypes);
 
-        Map<String, XYChart.Series<Number, Number>> generationSeriesMap = new LinkedHashMap<>();
-        for (String type : sortedTypes) {
-            XYChart.Series<Number, Number> series = new XYChart.Series<>();
-            series.setName(type);
-            generationSeriesMap.put(type, series);
+        // Called on the JavaFX thread
+        void drain() {
+            drainQueued.set(false);
+            List<MinuteSimulationResult> batch;
+            synchronized (pending) {
+                if (pending.isEmpty()) return;
+                batch = new ArrayList<>(pending);
+                pending.clear();
+            }
+            chart.append(batch);
         }
+    }
+
+    /**
+     * Chart of the generation by type (stacked areas) against the expected
+     * demand (line), growing as minutes are appended. The series of the types
+     * the simulation can report are created up front in sorted order, as in
+     * the chart drawn from the finished results, so every type keeps the
+     * default colour of its position whatever order the minutes bring them
+     * in. Minutes in which a type does not generate are zero.
+     * <p>
+     * The minutes are kept in columns and the series only get the rows picked
+     * by {@link Decimation}, about one per pixel of the chart width, so long
+     * horizons stay light to draw. Scrolling zooms the time axis around the
+     * pointer and picks the rows of the visible range again; a double click
+     * shows the whole run.
+     */
+    private static final class LiveChart {
+        private static final PlantCategory[] CATEGORIES = PlantCategory.values();
+        private static final double ZOOM_FACTOR = 1.25;
+        // Fewest minutes shown when zoomed in
+        private static final double MIN_RANGE = 10;
+
+        private final NumberAxis xAxis = new NumberAxis();
+        private final StackedAreaChart<Number, Number> areaChart;
+        private final LineChart<Number, Number> lineChart;
+        private final XYChart.Series<Number, Number> demandSeries = new XYChart.Series<>();
+        // Series and minutes by type, in legend order
+        private final Map<String, XYChart.Series<Number, Number>> generationSeries = new LinkedHashMap<>();
+        private final Map<String, double[]> generation = new LinkedHashMap<>();
+        private final Stage stage = new Stage();
+        private double[] demand = new double[256];
+        private int minutes;
+
+        LiveChart(List<String> types) {
+            xAxis.setLabel("Minutes since blackout");
+            NumberAxis yAxis = new NumberAxis();
+            yAxis.setLabel("Megawatts (MW)");
+
+            areaChart = new StackedAreaChart<>(xAxis, yAxis);
+            areaChart.setTitle("Energy Generation vs Expected Demand (36h)");
+            areaChart.setAnimated(false);
+            areaChart.setCreateSymbols(false);
+            areaChart.setLegendVisible(true);
+            areaChart.setStyle("-fx-background-color: transparent;");
+            areaChart.setPrefSize(1000, 600);
+
+            lineChart = new LineChart<>(xAxis, yAxis);
+            lineChart.setLegendVisible(false);
+            lineChart.setHorizontalGridLinesVisible(false);
+            lineChart.setVerticalGridLinesVisible(false);
+            lineChart.setAlternativeRowFillVisible(false);
+            lineChart.setAlternativeColumnFillVisible(false);
+            lineChart.setCreateSymbols(false);
+            lineChart.setAnimated(false);
+            lineChart.setOpacity(1.0);
+            lineChart.setStyle("-fx-background-color: transparent;");
+            lineChart.setPrefSize(1000, 600);
+
+            demandSeries.setName("Expected Demand");
+            lineChart.getData().add(demandSeries);
+            for (String type : types) {
+                addSeries(type);
+            }
 
-        XYChart.Series<Number, Number> demandSeries = new XYChart.Series<>();
-        demandSeries.setName("Expected Demand");
+            areaChart.setScaleY(1.12);
+            areaChart.setTranslateY(5);
+
+            StackPane chartPane = new StackPane(areaChart, lineChart);
+            chartPane.setOnScroll(e -> zoom(e.getDeltaY() > 0 ? 1 / ZOOM_FACTOR : ZOOM_FACTOR,
+                    xAxis.getValueForDisplay(xAxis.screenToLocal(e.getScreenX(), e.getScreenY()).getX())
+                            .doubleValue()));
+            chartPane.setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2) {
+                    xAxis.setAutoRanging(true);
+                    redraw();
+                }
+            });
+            areaChart.widthProperty().addListener((observable, oldWidth, newWidth) -> redraw());
+
+            stage.setTitle("Blackout Simulation - Energy Mix");
+            stage.setScene(new Scene(new VBox(chartPane), 1000, 650));
+        }
 
-        for (int i = 0; i < results.length(); i++) {
-            JSONObject result = results.getJSONObject(i);
-            double expected = result.getDouble("expectedDemandMW");
-            JSONObject genByType = result.getJSONObject("generatedByTypeMW");
+        void show() {
+            stage.show();
+            Platform.runLater(this::style);
+        }
 
-            demandSeries.getData().add(new XYChart.Data<>(i, expected));
+        void onClose(Runnable action) {
+            stage.setOnHidden(e -> action.run());
+        }
 
-            for (String type : sortedTypes) {
-                double value = genByType.optDouble(type, 0.0);
-                generationSeriesMap.get(type).getData().add(new XYChart.Data<>(i, value));
+        void append(List<MinuteSimulationResult> batch) {
+            boolean newSeries = false;
+            int needed = minutes + batch.size();
+            if (needed > demand.length) {
+                int capacity = Math.max(needed, demand.length * 2);
+                demand = Arrays.copyOf(demand, capacity);
+                generation.replaceAll((type, values) -> Arrays.copyOf(values, capacity));
             }
+            for (MinuteSimulationResult result : batch) {
+                GenerationMix mix = result.getGeneration();
+                for (PlantCategory category : CATEGORIES) {
+                    if (!mix.isReported(category)) continue;
+                    String type = category.getDisplayName();
+                    double[] values = generation.get(type);
+                    if (values == null) {
+                        // A type the plan did not announce is added last
+                        addSeries(type);
+                        values = generation.get(type);
+                        newSeries = true;
+                    }
+                    values[minutes] = mix.get(category);
+                }
+                demand[minutes] = result.getExpectedDemandMW();
+                minutes++;
+            }
+            redraw();
+            if (newSeries) style();
         }
 
-        for (String type : sortedTypes) {
-            XYChart.Series<Number, Number> series = generationSeriesMap.get(type);
-            if (series.getData().isEmpty() || series.getData().get(0).getXValue().intValue() != 0) {
-                series.getData().add(0, new XYChart.Data<>(0, 0.0));
-            }
+        private void addSeries(String type) {
+            XYChart.Series<Number, Number> series = new XYChart.Series<>();
+            series.setName(type);
+            generationSeries.put(type, series);
+            generation.put(type, new double[demand.length]);
+            areaChart.getData().add(series);
         }
 
-        areaChart.getData().addAll(generationSeriesMap.values());
-        lineChart.getData().add(demandSeries);
+        // Zooms the time axis by the factor, keeping the given minute in place
+        private void zoom(double factor, double centre) {
+            if (minutes < 2) return;
+            double lower = xAxis.isAutoRanging() ? 0 : xAxis.getLowerBound();
+            double upper = xAxis.isAutoRanging() ? minutes - 1 : xAxis.getUpperBound();
+            double range = Math.max(MIN_RANGE, Math.min(minutes - 1, (upper - lower) * factor));
+            double newLower = Math.max(0, Math.min(minutes - 1 - range, centre - (centre - lower) * factor));
+
+            xAxis.setAutoRanging(false);
+            xAxis.setLowerBound(newLower);
+            xAxis.setUpperBound(newLower + range);
+            xAxis.setTickUnit(range / 10);
+            redraw();
+        }
 
-        areaChart.setScaleY(1.12);
-        areaChart.setTranslateY(5);
+        // Fills the series with the rows picked for the visible range
+        private void redraw() {
+            int from = 0;
+            int to = minutes;
+            if (!xAxis.isAutoRanging()) {
+                from = Math.max(0, (int) Math.floor(xAxis.getLowerBound()));
+                to = Math.min(minutes, (int) Math.ceil(xAxis.getUpperBound()) + 1);
+            }
+            double width = areaChart.getWidth() > 0 ? areaChart.getWidth() : areaChart.getPrefWidth();
+            int points = Math.max(3, (int) width);
+
+            double[][] columns = new double[generation.size() + 1][];
+            columns[0] = demand;
+            int c = 1;
+            for (double[] values : generation.values()) {
+                columns[c++] = values;
+            }
+            int[] rows = Decimation.largestTriangleThreeBuckets(columns, from, to, points);
+
+            demandSeries.getData().setAll(points(rows, demand));
+            for (Map.Entry<String, XYChart.Series<Number, Number>> entry : generationSeries.entrySet()) {
+                entry.getValue().getData().setAll(points(rows, generation.get(entry.getKey())));
+            }
+        }
 
-        StackPane chartPane = new StackPane(areaChart, lineChart);
-        Scene scene = new Scene(new VBox(chartPane), 1000, 650);
-        Stage stage = new Stage();
-        stage.setTitle("Blackout Simulation - Energy Mix");
-        stage.setScene(scene);
-        stage.show();
+        private static List<XYChart.Data<Number, Number>> points(int[] rows, double[] values) {
+            List<XYChart.Data<Number, Number>> points = new ArrayList<>(rows.length);
+            for (int row : rows) {
+                points.add(new XYChart.Data<>(row, values[row]));
+            }
+            return points;
+        }
 
-        Platform.runLater(() -> {
+        private void style() {
             Node demandLine = lineChart.lookup(".chart-series-line");
             if (demandLine != null) {
                 demandLine.setStyle("-fx-stroke: black; -fx-stroke-width: 2px;");
@@ -263,17 +395,15 @@ public class PlayViewController {
                 chartBackground.setStyle("-fx-background-color: transparent;");
             }
 
-            int i = 0;
-            for (XYChart.Series<Number, Number> series : areaChart.getData()) {
+            for (int i = 0; i < areaChart.getData().size(); i++) {
                 String colorClass = ".default-color" + i;
                 Node fill = areaChart.lookup(colorClass + ".chart-series-area-fill");
                 Node line = areaChart.lookup(colorClass + ".chart-series-area-line");
 
                 if (fill != null) fill.setStyle("-fx-opacity: 0.4;");
                 if (line != null) line.setStyle("-fx-stroke-width: 0.5px;");
-                i++;
             }
-        });
+        }
     }
 
 }
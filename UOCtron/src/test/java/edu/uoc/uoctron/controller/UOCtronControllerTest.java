@@ -1,20 +1,65 @@
 package edu.uoc.uoctron.controller;
 
+import edu.uoc.uoctron.model.BlackoutScenario;
+import edu.uoc.uoctron.model.Decimation;
+import edu.uoc.uoctron.model.MinuteSimulationResult;
+import edu.uoc.uoctron.model.MonteCarloResult;
+import edu.uoc.uoctron.model.NuclearPlant;
+import edu.uoc.uoctron.model.PlantCatalog;
+import edu.uoc.uoctron.model.PlantCategory;
+import edu.uoc.uoctron.model.PlantClusters;
+import edu.uoc.uoctron.model.SimulationCache;
+import edu.uoc.uoctron.model.SimulationOptions;
+import edu.uoc.uoctron.model.SimulationResult;
+import edu.uoc.uoctron.model.SimulationSummary;
+import edu.uoc.uoctron.model.SpatialIndex;
+import edu.uoc.uoctron.model.UncertaintyModel;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.jupiter.api.*;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 public class UOCtronControllerTest {
 
+    private static Path snapshotDir;
+
     private UOCtronController controller;
 
+    // Resource snapshots go to a directory of their own, not the shared one
+    @BeforeAll
+    public static void setUpSnapshotDir() throws IOException {
+        snapshotDir = Files.createTempDirectory("uoctron-test");
+        System.setProperty("uoctron.snapshot.dir", snapshotDir.toString());
+    }
+
+    @AfterAll
+    public static void tearDownSnapshotDir() throws IOException {
+        System.clearProperty("uoctron.snapshot.dir");
+        try (var files = Files.list(snapshotDir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(snapshotDir);
+    }
+
     @BeforeEach
     public void setUp() {
         controller = new UOCtronController("plants.txt", "demand_forecast.txt");
@@ -349,4 +394,658 @@ public class UOCtronControllerTest {
         assertEquals(45.0, genByType2000.getDouble("Geothermal"), 0.1);
     }
 
+    @Test
+    @Order(11)
+    @Tag("advanced")
+    public void testBlackoutSweepMatchesSingleRuns() {
+        List<LocalDateTime> starts = new ArrayList<>();
+        for (int hour = 0; hour < 24; hour += 3) {
+            starts.add(LocalDateTime.of(LocalDate.now(), LocalTime.of(hour, 0)));
+        }
+
+        List<SimulationResult> sweep = controller.runBlackoutSweep(starts);
+        assertEquals(starts.size(), sweep.size());
+
+        for (int i = 0; i < starts.size(); i++) {
+            controller.runBlackoutSimulation(starts.get(i));
+            JSONArray results = controller.getSimulationResults();
+            SimulationResult result = sweep.get(i);
+
+            assertEquals(results.length(), result.size());
+            for (int minute = 0; minute < result.size(); minute++) {
+                JSONObject expected = results.getJSONObject(minute);
+                assertEquals(expected.getDouble("generatedMW"), result.getGeneratedMW(minute), 0.0001);
+                assertEquals(expected.getDouble("averageStability"), result.getAverageStability(minute), 0.0001);
+            }
+        }
+    }
+
+    @Test
+    @Order(12)
+    @Tag("advanced")
+    public void testPublishedSimulationFollowsDemandAndCancel() throws Exception {
+        LocalDateTime blackoutStart = LocalDateTime.of(LocalDate.now(), LocalTime.of(0, 0));
+        List<MinuteSimulationResult> received = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        controller.publishBlackoutSimulation(blackoutStart, executor).subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(MinuteSimulationResult minute) {
+                received.add(minute);
+                if (received.size() == 600) {
+                    subscription.cancel();
+                    done.complete(null);
+                } else {
+                    subscription.request(1);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.completeExceptionally(new AssertionError("Completed after being cancelled"));
+            }
+        });
+
+        done.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(600, received.size());
+
+        controller.runBlackoutSimulation(blackoutStart);
+        JSONArray results = controller.getSimulationResults();
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(results.getJSONObject(i).getDouble("generatedMW"), received.get(i).getGeneratedMW(), 0.0001);
+        }
+        assertEquals(562.5, received.get(500).getGeneratedByTypeMW().get("Solar"), 0.1);
+    }
+
+    @Test
+    @Order(13)
+    @Tag("advanced")
+    public void testWeekLongSimulationWithCoarseStep() {
+        LocalDateTime blackoutStart = LocalDateTime.of(2025, 4, 28, 12, 33);
+        controller.runBlackoutSimulation(blackoutStart);
+        JSONArray minutes = controller.getSimulationResults();
+
+        controller.runBlackoutSimulation(blackoutStart,
+                SimulationOptions.of(Duration.ofDays(7), Duration.ofMinutes(15)));
+        JSONArray results = controller.getSimulationResults();
+
+        assertEquals(7 * 24 * 4, results.length());
+        assertEquals("2025-04-28T12:48", results.getJSONObject(1).getString("time"));
+        assertEquals("2025-05-05T12:18", results.getJSONObject(results.length() - 1).getString("time"));
+
+        // Every coarse step matches the minute-by-minute run at the same time
+        for (int i = 0; i * 15 < minutes.length(); i++) {
+            assertEquals(minutes.getJSONObject(i * 15).getDouble("generatedMW"),
+                    results.getJSONObject(i).getDouble("generatedMW"), 0.0001);
+        }
+    }
+
+    @Test
+    @Order(14)
+    @Tag("advanced")
+    public void testDemandFollowsTimeOfDay() {
+        controller.runBlackoutSimulation(LocalDateTime.of(LocalDate.now(), LocalTime.of(0, 0)));
+        JSONArray midnight = controller.getSimulationResults();
+        controller.runBlackoutSimulation(LocalDateTime.of(LocalDate.now(), LocalTime.of(6, 0)));
+        JSONArray morning = controller.getSimulationResults();
+
+        for (int i = 0; i + 360 < midnight.length(); i++) {
+            assertEquals(midnight.getJSONObject(i + 360).getDouble("expectedDemandMW"),
+                    morning.getJSONObject(i).getDouble("expectedDemandMW"), 0.0001);
+        }
+        // A day later the demand curve starts over
+        assertEquals(morning.getJSONObject(0).getDouble("expectedDemandMW"),
+                morning.getJSONObject(1440).getDouble("expectedDemandMW"), 0.0001);
+    }
+
+    @Test
+    @Order(15)
+    @Tag("advanced")
+    public void testDateAwareDemandForecast() throws Exception {
+        Path text = Files.createTempFile("demand", ".txt");
+        Path binary = Files.createTempFile("demand", ".bin");
+        try {
+            List<String> lines = new ArrayList<>(Files.readAllLines(
+                    Path.of(getClass().getResource("/data/demand_forecast.txt").toURI())));
+            lines.add("2025-04-29T06:00,12345");
+            Files.write(text, lines);
+            DemandForecastConverter.convert(text, binary, LocalDate.of(2025, 4, 28), LocalDate.of(2025, 4, 30));
+
+            LocalDateTime blackoutStart = LocalDateTime.of(2025, 4, 28, 12, 0);
+            controller.runBlackoutSimulation(blackoutStart);
+            JSONArray daily = controller.getSimulationResults();
+
+            controller.loadDemandForecast(binary);
+            controller.runBlackoutSimulation(blackoutStart);
+            JSONArray dated = controller.getSimulationResults();
+
+            assertEquals(daily.getJSONObject(0).getDouble("expectedDemandMW"),
+                    dated.getJSONObject(0).getDouble("expectedDemandMW"), 0.0001);
+            assertEquals("2025-04-29T06:00", dated.getJSONObject(1080).getString("time"));
+            assertEquals(12345, dated.getJSONObject(1080).getDouble("expectedDemandMW"), 0.0001);
+
+            // Windows the store does not cover use the daily profile
+            controller.runBlackoutSimulation(LocalDateTime.of(2025, 4, 30, 12, 0));
+            assertEquals(daily.getJSONObject(0).getDouble("expectedDemandMW"),
+                    controller.getSimulationResults().getJSONObject(0).getDouble("expectedDemandMW"), 0.0001);
+
+            // Bad times are reported with their line, like bad values
+            Files.write(text, List.of("00:00,1000", "25:61,1000"));
+            IOException error = assertThrows(IOException.class, () ->
+                    DemandForecastConverter.convert(text, binary, LocalDate.of(2025, 4, 28), LocalDate.of(2025, 4, 28)));
+            assertTrue(error.getMessage().endsWith(":2: invalid time '25:61'"));
+        } finally {
+            Files.deleteIfExists(text);
+            Files.deleteIfExists(binary);
+        }
+    }
+
+    @Test
+    @Order(16)
+    @Tag("advanced")
+    public void testResourceParserReportsBadRows() {
+        String plantsFile = "#Type,Name,Latitude,Longitude,City,Max_Capacity_MW\n"
+                + "NUCLEAR,Ascó I,41.1833,0.5667,Ascó,1275.0\n"
+                + "WIND,Bad latitude,4l.5,0.5,City,10\r\n"
+                + "\n"
+                + "SOLAR,Too short,41.0,0.5\n"
+                + "combined_cycle, Spaced , -1.5e1 , 2 , City , 400\n";
+        List<ResourceParser.Diagnostic> diagnostics = new ArrayList<>();
+        ResourceParser.PlantColumns columns = ResourceParser.parsePlants("plants.txt",
+                plantsFile.getBytes(java.nio.charset.StandardCharsets.UTF_8), diagnostics);
+
+        assertEquals(2, columns.size);
+        assertEquals("Nuclear", columns.types[0]);
+        assertEquals("Ascó", columns.cities[0]);
+        assertEquals(1275.0, columns.capacities[0]);
+        assertEquals("Combined_cycle", columns.types[1]);
+        assertEquals("Spaced", columns.names[1]);
+        assertEquals(-15.0, columns.latitudes[1]);
+
+        assertEquals(2, diagnostics.size());
+        assertEquals("plants.txt:3:20: unexpected character in number", diagnostics.get(0).toString());
+        assertEquals(5, diagnostics.get(1).line());
+        assertEquals(25, diagnostics.get(1).column());
+    }
+
+    @Test
+    @Order(17)
+    @Tag("advanced")
+    public void testControllersShareLoadedResources() {
+        UOCtronController other = new UOCtronController("plants.txt", "demand_forecast.txt");
+
+        assertEquals(controller.getNuclearPlants().length, other.getNuclearPlants().length);
+        for (int i = 0; i < controller.getNuclearPlants().length; i++) {
+            assertSame(controller.getNuclearPlants()[i], other.getNuclearPlants()[i]);
+        }
+    }
+
+    @Test
+    @Order(18)
+    @Tag("advanced")
+    public void testPlantRegistryLookups() {
+        PlantCatalog catalog = controller.getCatalog();
+        assertSame(controller.getNuclearPlants(), controller.getNuclearPlants());
+
+        int id = catalog.idOf("Cofrentes Nuclear Power Plant");
+        assertEquals(4, id);
+        assertSame(controller.getNuclearPlants()[4], catalog.get(id));
+        assertEquals(-1, catalog.idOf("Unknown plant"));
+
+        int total = 0;
+        for (PlantCategory category : PlantCategory.values()) {
+            List<NuclearPlant> plants = catalog.getPlants(category);
+            assertEquals(catalog.count(category), plants.size());
+            int[] ids = catalog.ids(category);
+            for (int i = 0; i < ids.length; i++) {
+                assertSame(catalog.get(ids[i]), plants.get(i));
+                assertEquals(category, plants.get(i).getCategory());
+                if (i > 0) assertTrue(ids[i - 1] < ids[i]);
+            }
+            total += plants.size();
+        }
+        assertEquals(catalog.size(), total);
+        assertEquals(7, catalog.count(PlantCategory.NUCLEAR));
+    }
+
+    @Test
+    @Order(19)
+    @Tag("advanced")
+    public void testSpatialQueriesMatchLinearScan() {
+        NuclearPlant[] plants = controller.getNuclearPlants();
+
+        // Catalonia
+        List<NuclearPlant> expected = new ArrayList<>();
+        for (NuclearPlant p : plants) {
+            if (p.getLatitude() >= 40.5 && p.getLatitude() <= 42.9
+                    && p.getLongitude() >= 0.1 && p.getLongitude() <= 3.4) expected.add(p);
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, controller.getPlantsInRegion(40.5, 0.1, 42.9, 3.4));
+
+        // 250 km around Madrid
+        expected.clear();
+        for (NuclearPlant p : plants) {
+            if (SpatialIndex.distanceKm(40.4168, -3.7038, p.getLatitude(), p.getLongitude()) <= 250) expected.add(p);
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, controller.getPlantsWithinKm(40.4168, -3.7038, 250));
+
+        List<NuclearPlant> nearest = controller.getNearestPlants(40.4168, -3.7038, 5);
+        assertEquals(5, nearest.size());
+        double fifth = SpatialIndex.distanceKm(40.4168, -3.7038,
+                nearest.get(4).getLatitude(), nearest.get(4).getLongitude());
+        int closer = 0;
+        for (NuclearPlant p : plants) {
+            if (SpatialIndex.distanceKm(40.4168, -3.7038, p.getLatitude(), p.getLongitude()) < fifth) closer++;
+        }
+        assertTrue(closer < 5);
+        assertEquals(plants.length, controller.getNearestPlants(0, 0, 1000).size());
+    }
+
+    @Test
+    @Order(20)
+    @Tag("advanced")
+    public void testPartialBlackoutScenarios() {
+        LocalDateTime blackoutStart = LocalDateTime.of(LocalDate.now(), LocalTime.of(0, 0));
+        PlantCatalog catalog = controller.getCatalog();
+
+        controller.runBlackoutSimulation(blackoutStart);
+        JSONArray total = controller.getSimulationResults();
+        controller.runBlackoutSimulation(blackoutStart, BlackoutScenario.total(catalog));
+        JSONArray sameAsTotal = controller.getSimulationResults();
+        for (int i = 0; i < total.length(); i++) {
+            assertEquals(total.getJSONObject(i).getDouble("generatedMW"),
+                    sameAsTotal.getJSONObject(i).getDouble("generatedMW"), 0.0001);
+        }
+
+        // Only the hydroelectric plants trip: nuclear keeps producing from
+        // the first minute
+        controller.runBlackoutSimulation(blackoutStart, BlackoutScenario.ofCategories(catalog, PlantCategory.HYDROELECTRIC));
+        JSONObject first = controller.getSimulationResults().getJSONObject(0);
+        assertTrue(first.getDouble("generatedMW") > 0);
+        assertTrue(first.getJSONObject("generatedByTypeMW").has("Nuclear"));
+        assertFalse(first.getJSONObject("generatedByTypeMW").has("Hydroelectric"));
+
+        // N-1 outages: one scenario per nuclear plant
+        List<BlackoutScenario> scenarios = new ArrayList<>();
+        for (int id : catalog.ids(PlantCategory.NUCLEAR)) {
+            scenarios.add(BlackoutScenario.ofPlants(catalog, id));
+        }
+        List<Double> firstMinute = controller.runScenarioSweep(blackoutStart, scenarios,
+                result -> result.getGeneratedMW(0));
+        assertEquals(scenarios.size(), firstMinute.size());
+        for (int i = 0; i < scenarios.size(); i++) {
+            assertEquals(1, scenarios.get(i).getAffectedCount());
+            assertTrue(firstMinute.get(i) > 0);
+        }
+    }
+
+    @Test
+    @Order(21)
+    @Tag("advanced")
+    public void testMonteCarloBands() {
+        LocalDateTime blackoutStart = LocalDateTime.of(LocalDate.now(), LocalTime.of(0, 0));
+
+        // Without uncertainty every sample is the deterministic run
+        SimulationResult deterministic = controller.runBlackoutSweep(List.of(blackoutStart)).get(0);
+        MonteCarloResult fixed = controller.runMonteCarlo(blackoutStart, UncertaintyModel.NONE, 8, 1L);
+        assertEquals(2160, fixed.getRows());
+        assertEquals(8, fixed.getSamples());
+        assertArrayEquals(deterministic.getGeneratedMW(), fixed.getGeneratedMW(50), 0.0001);
+        assertArrayEquals(deterministic.getAverageStability(), fixed.getStability(5), 0.0001);
+
+        MonteCarloResult bands = controller.runMonteCarlo(blackoutStart, 200, 42L);
+        MonteCarloResult again = controller.runMonteCarlo(blackoutStart, 200, 42L);
+        assertEquals(200, bands.getSamples());
+        double[] p5 = bands.getGeneratedMW(5);
+        double[] p50 = bands.getGeneratedMW(50);
+        double[] p95 = bands.getGeneratedMW(95);
+        assertArrayEquals(p50, again.getGeneratedMW(50));
+        assertArrayEquals(bands.getStability(95), again.getStability(95));
+
+        boolean spread = false;
+        for (int row = 0; row < bands.getRows(); row++) {
+            assertTrue(p5[row] <= p50[row] && p50[row] <= p95[row]);
+            spread |= p95[row] > p5[row];
+        }
+        assertTrue(spread);
+        assertThrows(IllegalArgumentException.class, () -> bands.getStability(101));
+    }
+
+    @Test
+    @Order(22)
+    @Tag("advanced")
+    public void testStreamingSummary() {
+        LocalDateTime blackoutStart = LocalDateTime.of(LocalDate.now(), LocalTime.of(0, 0));
+
+        SimulationResult result = controller.runBlackoutSweep(List.of(blackoutStart)).get(0);
+        SimulationSummary summary = controller.runBlackoutSummary(blackoutStart);
+        SimulationSummary fromRows = SimulationSummary.of(result);
+
+        double unservedMWh = 0;
+        double minStability = Double.MAX_VALUE;
+        int below = 0;
+        int full = -1;
+        for (int row = 0; row < result.size(); row++) {
+            double gap = result.getExpectedDemandMW(row) - result.getGeneratedMW(row);
+            if (gap > 0.001) unservedMWh += gap / 60;
+            else if (full < 0) full = row;
+            minStability = Math.min(minStability, result.getAverageStability(row));
+            if (result.getAverageStability(row) < 0.7) below++;
+        }
+        assertEquals(2160, summary.getMinutes());
+        assertEquals(unservedMWh, summary.getEnergyNotServedMWh(), 0.001);
+        assertEquals(minStability, summary.getMinimumStability(), 0.0001);
+        assertEquals(below, summary.getMinutesBelowMinStability());
+        assertEquals(full, summary.getMinutesToFullCoverage());
+        assertTrue(summary.getMinutesToHalfCoverage() <= summary.getMinutesTo90PercentCoverage());
+        assertTrue(summary.getEnergyNotServedMWh() > 0);
+        assertEquals(summary.getEnergyNotServedMWh(), fromRows.getEnergyNotServedMWh(), 0.0001);
+        assertEquals(summary.getMinutesToFullCoverage(), fromRows.getMinutesToFullCoverage());
+
+        List<SimulationSummary> sweep = controller.runSummarySweep(List.of(blackoutStart, blackoutStart.plusHours(12)));
+        assertEquals(2, sweep.size());
+        assertEquals(summary.getEnergyNotServedMWh(), sweep.get(0).getEnergyNotServedMWh(), 0.0001);
+    }
+
+    @Test
+    @Order(23)
+    @Tag("advanced")
+    public void testResultCache() {
+        LocalDateTime blackoutStart = LocalDateTime.of(LocalDate.of(2025, 4, 28), LocalTime.of(12, 33));
+        SimulationCache cache = controller.getSimulationCache();
+        cache.clear();
+
+        controller.runBlackoutSimulation(blackoutStart);
+        JSONArray first = controller.getSimulationResults();
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        controller.runBlackoutSimulation(blackoutStart);
+        assertEquals(1, cache.getHits());
+
+        // Another day at the same time reuses the run with its own times
+        controller.runBlackoutSimulation(blackoutStart.plusDays(3));
+        JSONArray otherDay = controller.getSimulationResults();
+        assertEquals(2, cache.getHits());
+        assertEquals(blackoutStart.plusDays(3).toString(), otherDay.getJSONObject(0).getString("time"));
+        for (int i = 0; i < first.length(); i += 97) {
+            assertEquals(first.getJSONObject(i).getDouble("generatedMW"),
+                    otherDay.getJSONObject(i).getDouble("generatedMW"), 0.0);
+        }
+
+        // A total-blackout scenario is the same run
+        controller.runBlackoutSimulation(blackoutStart, BlackoutScenario.total(controller.getCatalog()));
+        assertEquals(3, cache.getHits());
+        controller.runBlackoutSimulation(blackoutStart, SimulationOptions.of(Duration.ofHours(6), Duration.ofMinutes(1)));
+        assertEquals(2, cache.getMisses());
+
+        // Least recently used runs are evicted
+        List<LocalDateTime> starts = new ArrayList<>();
+        for (int i = 0; i < cache.getMaxEntries() + 5; i++) {
+            starts.add(blackoutStart.plusMinutes(i + 1));
+        }
+        controller.runBlackoutSweep(starts);
+        assertEquals(cache.getMaxEntries(), cache.size());
+    }
+
+    @Test
+    @Order(24)
+    @Tag("advanced")
+    public void testStreamingJsonExport() throws Exception {
+        LocalDateTime blackoutStart = LocalDateTime.of(LocalDate.of(2025, 4, 28), LocalTime.of(12, 33));
+        controller.runBlackoutSimulation(blackoutStart);
+        JSONArray expected = controller.getSimulationResults();
+
+        StringWriter array = new StringWriter();
+        controller.writeSimulationResults(array, SimulationResultWriter.Format.JSON_ARRAY);
+        JSONArray written = new JSONArray(array.toString());
+        assertEquals(expected.length(), written.length());
+        for (int i = 0; i < expected.length(); i += 53) {
+            JSONObject a = expected.getJSONObject(i);
+            JSONObject b = written.getJSONObject(i);
+            assertEquals(a.getString("time"), b.getString("time"));
+            assertEquals(a.getDouble("generatedMW"), b.getDouble("generatedMW"), 0.0);
+            assertEquals(a.getDouble("averageStability"), b.getDouble("averageStability"), 0.0);
+            JSONObject mix = a.getJSONObject("generatedByTypeMW");
+            assertEquals(mix.keySet(), b.getJSONObject("generatedByTypeMW").keySet());
+            for (String type : mix.keySet()) {
+                assertEquals(mix.getDouble(type), b.getJSONObject("generatedByTypeMW").getDouble(type), 0.0);
+            }
+        }
+
+        // Slices of several runs as JSON Lines
+        SimulationResult result = controller.runBlackoutSweep(List.of(blackoutStart)).get(0);
+        StringWriter lines = new StringWriter();
+        SimulationResultWriter writer = new SimulationResultWriter(lines, SimulationResultWriter.Format.JSON_LINES);
+        writer.write(result, 0, 100);
+        writer.write(result, 100, result.size());
+        writer.finish();
+        assertEquals(result.size(), writer.getRows());
+        String[] rows = lines.toString().split("\n");
+        assertEquals(result.size(), rows.length);
+        assertEquals(expected.getJSONObject(100).getDouble("generatedMW"),
+                new JSONObject(rows[100]).getDouble("generatedMW"), 0.0);
+        assertThrows(java.io.IOException.class, () -> writer.write(result));
+
+        StringWriter sweep = new StringWriter();
+        controller.exportBlackoutSweep(List.of(blackoutStart, blackoutStart.plusHours(1)), sweep,
+                SimulationResultWriter.Format.JSON_LINES);
+        assertEquals(2 * result.size(), sweep.toString().split("\n").length);
+    }
+
+    @Test
+    @Order(25)
+    @Tag("advanced")
+    public void testChartDecimation() {
+        LocalDateTime blackoutStart = LocalDateTime.of(LocalDate.now(), LocalTime.of(0, 0));
+        SimulationResult result = controller.runBlackoutSweep(List.of(blackoutStart)).get(0);
+        double[][] columns = {
+                result.getExpectedDemandMW(),
+                result.getGeneratedMW(PlantCategory.HYDROELECTRIC),
+                result.getGeneratedMW(PlantCategory.NUCLEAR)
+        };
+
+        int[] rows = Decimation.largestTriangleThreeBuckets(columns, 0, result.size(), 300);
+        assertEquals(300, rows.length);
+        assertEquals(0, rows[0]);
+        assertEquals(result.size() - 1, rows[rows.length - 1]);
+        for (int i = 1; i < rows.length; i++) {
+            assertTrue(rows[i] > rows[i - 1]);
+        }
+
+        // The step up of the hydroelectric output stays sharp: the kept rows
+        // around it are at most a bucket apart
+        boolean stepKept = false;
+        for (int i = 1; i < rows.length; i++) {
+            stepKept |= columns[1][rows[i - 1]] == 0 && columns[1][rows[i]] > 0 && rows[i] - rows[i - 1] <= 8;
+        }
+        assertTrue(stepKept);
+
+        // Short ranges are kept whole
+        assertArrayEquals(new int[]{10, 11, 12, 13}, Decimation.largestTriangleThreeBuckets(columns, 10, 14, 300));
+        assertEquals(0, Decimation.largestTriangleThreeBuckets(columns, 5, 5, 300).length);
+    }
+
+    @Test
+    @Order(26)
+    @Tag("advanced")
+    public void testTypedViewModel() {
+        List<PlantDescriptor> descriptors = controller.getPlantDescriptors();
+        NuclearPlant[] plants = controller.getNuclearPlants();
+        assertEquals(plants.length, descriptors.size());
+        for (int id = 0; id < plants.length; id++) {
+            PlantDescriptor descriptor = descriptors.get(id);
+            assertEquals(id, descriptor.id());
+            assertEquals(plants[id].getName(), descriptor.name());
+            assertEquals(plants[id].getType(), descriptor.type());
+            assertEquals(plants[id].getCategory(), descriptor.category());
+            assertEquals(plants[id].getLatitude(), descriptor.latitude(), 0.0);
+            assertEquals(plants[id].getImage(), descriptor.icon());
+        }
+        assertThrows(UnsupportedOperationException.class, () -> descriptors.remove(0));
+
+        assertNull(controller.getSimulationResult());
+        controller.runBlackoutSimulation(LocalDateTime.of(LocalDate.now(), LocalTime.of(8, 0)));
+        SimulationResult result = controller.getSimulationResult();
+        JSONArray json = controller.getSimulationResults();
+        assertEquals(json.length(), result.size());
+        for (int row = 0; row < result.size(); row += 131) {
+            JSONObject obj = json.getJSONObject(row);
+            assertEquals(obj.getDouble("generatedMW"), result.getGeneratedMW(row), 0.0);
+            for (PlantCategory category : PlantCategory.values()) {
+                assertEquals(obj.getJSONObject("generatedByTypeMW").has(category.getDisplayName()),
+                        result.isReported(category, row));
+            }
+        }
+    }
+
+    @Test
+    @Order(27)
+    @Tag("advanced")
+    public void testPlantClusters() {
+        PlantCatalog catalog = controller.getCatalog();
+        int almaraz = catalog.idOf("Almaraz I Nuclear Power Plant");
+        int almaraz2 = catalog.idOf("Almaraz II Nuclear Power Plant");
+        int asco = catalog.idOf("Ascó I Nuclear Power Plant");
+
+        // Co-located units share a marker even with a tiny radius
+        PlantClusters fine = new PlantClusters(catalog, 0.001, 0.001);
+        PlantClusters.Cluster cluster = fine.clusterOf(almaraz);
+        assertSame(cluster, fine.clusterOf(almaraz2));
+        assertArrayEquals(new int[]{almaraz, almaraz2}, cluster.plantIds());
+        assertEquals(2600.0, cluster.totalCapacityMW(), 1e-9);
+        assertEquals(39.8081, cluster.latitude(), 1e-9);
+        assertNotSame(cluster, fine.clusterOf(asco));
+
+        // A radius covering the whole map merges everything, wherever it is
+        PlantClusters coarse = new PlantClusters(catalog, 90, 180);
+        assertEquals(1, coarse.size());
+        double total = 0;
+        for (NuclearPlant p : controller.getNuclearPlants()) {
+            total += p.getMaxCapacityMW();
+        }
+        assertEquals(catalog.size(), coarse.getClusters().get(0).size());
+        assertEquals(total, coarse.getClusters().get(0).totalCapacityMW(), 1e-6);
+
+        // Every plant lands in exactly one cluster, within the radius of the
+        // plant that started it, and those plants are farther apart
+        double radius = 0.5;
+        PlantClusters clusters = new PlantClusters(catalog, radius, radius);
+        int plants = 0;
+        for (PlantClusters.Cluster c : clusters.getClusters()) {
+            plants += c.size();
+            NuclearPlant first = catalog.get(c.plantIds()[0]);
+            for (int id : c.plantIds()) {
+                assertSame(c, clusters.clusterOf(id));
+                assertTrue(Math.abs(catalog.get(id).getLatitude() - first.getLatitude()) <= radius
+                        && Math.abs(catalog.get(id).getLongitude() - first.getLongitude()) <= radius);
+            }
+            for (PlantClusters.Cluster other : clusters.getClusters()) {
+                NuclearPlant otherFirst = catalog.get(other.plantIds()[0]);
+                assertTrue(other == c || Math.abs(otherFirst.getLatitude() - first.getLatitude()) > radius
+                        || Math.abs(otherFirst.getLongitude() - first.getLongitude()) > radius);
+            }
+        }
+        assertEquals(catalog.size(), plants);
+
+        // The clusters of a box are the ones positioned in it
+        List<PlantClusters.Cluster> expected = new ArrayList<>();
+        for (PlantClusters.Cluster c : clusters.getClusters()) {
+            if (c.latitude() >= 40.5 && c.latitude() <= 42.9 && c.longitude() >= 0.1 && c.longitude() <= 3.4) {
+                expected.add(c);
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, clusters.within(40.5, 0.1, 42.9, 3.4));
+        assertTrue(clusters.within(50, 10, 51, 11).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new PlantClusters(catalog, -1, 1));
+    }
+
+    @Test
+    @Order(28)
+    @Tag("advanced")
+    public void testDamagedSnapshotsAreRejected() throws Exception {
+        byte[] plants = getClass().getResourceAsStream("/data/plants.txt").readAllBytes();
+        byte[] demand = getClass().getResourceAsStream("/data/demand_forecast.txt").readAllBytes();
+        String hash = ResourceSnapshot.hash(plants, demand);
+        Path file = ResourceSnapshot.file(hash);
+        assertTrue(file.startsWith(snapshotDir));
+        assertNotNull(ResourceSnapshot.read(file, hash));
+
+        byte[] bytes = Files.readAllBytes(file);
+        Path damaged = snapshotDir.resolve("damaged.snapshot");
+        // A flipped bit in the data
+        byte[] flipped = bytes.clone();
+        flipped[flipped.length - 100] ^= 1;
+        Files.write(damaged, flipped);
+        assertNull(ResourceSnapshot.read(damaged, hash));
+        // Trailing bytes
+        byte[] longer = Arrays.copyOf(bytes, bytes.length + 1);
+        Files.write(damaged, longer);
+        assertNull(ResourceSnapshot.read(damaged, hash));
+        // Truncated
+        Files.write(damaged, Arrays.copyOf(bytes, bytes.length - 1));
+        assertNull(ResourceSnapshot.read(damaged, hash));
+    }
+
+    @Test
+    @Order(29)
+    @Tag("advanced")
+    public void testGenerationTypesMatchResults() {
+        List<String> types = controller.getGenerationTypes();
+        assertEquals(List.of("Coal", "Combined cycle", "Geothermal", "Hydroelectric", "Nuclear", "Solar", "Wind"),
+                types);
+
+        // The types reported over whole runs, sorted as the chart legend
+        Set<String> reported = new TreeSet<>();
+        for (LocalTime time : List.of(LocalTime.of(0, 0), LocalTime.of(12, 0))) {
+            controller.runBlackoutSimulation(LocalDateTime.of(LocalDate.now(), time));
+            JSONArray results = controller.getSimulationResults();
+            for (int i = 0; i < results.length(); i++) {
+                reported.addAll(results.getJSONObject(i).getJSONObject("generatedByTypeMW").keySet());
+            }
+        }
+        assertEquals(types, new ArrayList<>(reported));
+    }
+
+    @Test
+    @Order(30)
+    @Tag("advanced")
+    public void testNearestWithCoordinatesNoCircleFinds() {
+        List<NuclearPlant> plants = new ArrayList<>(List.of(controller.getNuclearPlants()).subList(0, 20));
+        plants.add(new NuclearPlant("Off the map", "Nuclear", "Nowhere", 40, 200, 100,
+                Duration.ofMinutes(100), Duration.ZERO, 1, "nuclear.png"));
+        plants.add(new NuclearPlant("Unknown", "Nuclear", "Nowhere", 40, Double.NaN, 100,
+                Duration.ofMinutes(100), Duration.ZERO, 1, "nuclear.png"));
+        SpatialIndex index = new PlantCatalog(plants).getSpatialIndex();
+
+        // The plants no circle finds are still ranked, after the others
+        int[] nearest = index.nearest(40.4168, -3.7038, plants.size());
+        assertEquals(plants.size(), nearest.length);
+        assertEquals(Set.of(20, 21), Set.of(nearest[20], nearest[21]));
+        assertArrayEquals(Arrays.copyOf(nearest, 20), index.nearest(40.4168, -3.7038, 20));
+
+        // A point that is not a number is at no distance from any plant
+        assertEquals(plants.size(), index.nearest(Double.NaN, 0, plants.size()).length);
+        assertEquals(5, index.nearest(Double.NaN, Double.NaN, 5).length);
+    }
+
 }